@@ -0,0 +1,93 @@
+package com.uidroid.uidroid;
+
+import android.view.View;
+
+import com.uidroid.uidroid.model.ViewConfiguration;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class representing a FIFO queue of pairs consisting of an Android view and his
+ * ViewConfiguration data. Pairs are stored in two parallel arrays which are reused across
+ * traversals, so adding and polling pairs doesn't allocate once the arrays are big enough.
+ */
+final class BindingQueue {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private View[] views = new View[INITIAL_CAPACITY];
+    private ViewConfiguration[] configurations = new ViewConfiguration[INITIAL_CAPACITY];
+
+    private int head = 0;
+    private int tail = 0;
+
+    void add(View view, ViewConfiguration configuration) {
+        if (tail == views.length) {
+            ensureCapacity();
+        }
+
+        views[tail] = view;
+        configurations[tail] = configuration;
+        tail++;
+    }
+
+    void addChildren(ViewConfiguration configuration) {
+        final List<ViewConfiguration> children = configuration.getChildrenConfigurations();
+
+        for (int i = 0; i < children.size(); i++) {
+            add(null, children.get(i));
+        }
+    }
+
+    boolean isEmpty() {
+        return head == tail;
+    }
+
+    View view() {
+        return views[head];
+    }
+
+    ViewConfiguration configuration() {
+        return configurations[head];
+    }
+
+    void poll() {
+        views[head] = null;
+        configurations[head] = null;
+        head++;
+
+        if (head == tail) {
+            head = 0;
+            tail = 0;
+        }
+    }
+
+    void clear() {
+        for (int i = head; i < tail; i++) {
+            views[i] = null;
+            configurations[i] = null;
+        }
+
+        head = 0;
+        tail = 0;
+    }
+
+    private void ensureCapacity() {
+        final int size = tail - head;
+
+        if (head > 0 && size < views.length / 2) {
+            System.arraycopy(views, head, views, 0, size);
+            System.arraycopy(configurations, head, configurations, 0, size);
+            Arrays.fill(views, size, tail, null);
+            Arrays.fill(configurations, size, tail, null);
+        } else {
+            views = Arrays.copyOfRange(views, head, head + views.length * 2);
+            configurations = Arrays.copyOfRange(configurations, head, head + configurations.length * 2);
+        }
+
+        head = 0;
+        tail = size;
+    }
+
+}
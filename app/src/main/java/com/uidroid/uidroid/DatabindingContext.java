@@ -3,6 +3,7 @@ package com.uidroid.uidroid;
 import android.content.Context;
 import android.os.Handler;
 import android.os.Looper;
+import android.view.Choreographer;
 import android.view.View;
 import android.view.ViewGroup;
 
@@ -20,12 +21,16 @@ import com.uidroid.uidroid.loader.IImageLoader;
 import com.uidroid.uidroid.model.ViewConfiguration;
 import com.uidroid.uidroid.view.ViewComposite;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
+import java.util.Set;
 import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -68,7 +73,8 @@ import java.util.concurrent.ConcurrentHashMap;
  * configuration or view requires it.
  *
  * Views are all tagged with a ViewTag object, which provides the information about the set of click
- * listeners attached and the respective configuration. This class can generate any CompositeView
+ * listeners attached and the respective configuration. The view's composite mapping is cached on the
+ * view itself, as a keyed tag, so it doesn't keep the view reachable. This class can generate any CompositeView
  * annotated view, and also some defaults such as TextViews, ImageViews and RecyclerViews. View's
  * clicks are handled by a dedicated class in order to enable multiple click listeners. At binding
  * time are added the action provided with the configuration (others listeners can be registered in
@@ -80,6 +86,11 @@ public abstract class DatabindingContext {
 
     public final static String DATABINDING_CONTEXT_TAG = "DatabindingContext";
 
+    /**
+     * Marker cached on views which are not composite, so that the factory isn't called again.
+     */
+    private static final Object NO_COMPOSITE = new Object();
+
     private int lastTag = 0;
 
     private Handler mainHandler;
@@ -95,6 +106,16 @@ public abstract class DatabindingContext {
     private final List<String> roots = Collections.synchronizedList(new LinkedList<>());
 
     private final Map<View, ViewTag> tags = new WeakHashMap<>();
+    private final Map<ViewConfiguration, Set<View>> boundViews = new WeakHashMap<>();
+    private final Deque<BindingQueue> queuePool = new ArrayDeque<>();
+
+    private boolean incrementalBinding = false;
+
+    private final List<ViewConfiguration> dirtyConfigurations = new ArrayList<>();
+    private boolean frameScheduled = false;
+    private Choreographer.FrameCallback frameCallback;
+
+    private final ViewConfiguration.IViewConfigurationObserver dirtyObserver = this::onConfigurationDirty;
     private final Map<String, DatabindingEntry> entries = new ConcurrentHashMap<>(new LinkedHashMap<>());
 
     /**
@@ -174,6 +195,18 @@ public abstract class DatabindingContext {
      * @param configuration A IViewConfiguration representing the data for the view.
      */
     public void bindViewToConfiguration(View view, ViewConfiguration configuration) {
+        bindViewToConfiguration(view, configuration, incrementalBinding);
+    }
+
+    /**
+     * Binds an Android View to the respective IViewConfiguration, skipping the unchanged
+     * configurations already bound to the same views if incremental is true.
+     *
+     * @param view          A generic Android's View to bind.
+     * @param configuration A IViewConfiguration representing the data for the view.
+     * @param incremental   boolean to decide if the binding is incremental or not.
+     */
+    private void bindViewToConfiguration(View view, ViewConfiguration configuration, boolean incremental) {
         if (isInvalidViewConfiguration(view, configuration)) {
             DatabindingLogger.log(DatabindingLogger.Level.ERROR,
                     "Cannot bind null view and/or object");
@@ -182,27 +215,52 @@ public abstract class DatabindingContext {
 
         buildBindingEntry(configuration);
 
-        final Queue<ViewBindingPair> queue = new LinkedList<>();
-        queue.add(new ViewBindingPair(view, configuration));
+        final BindingQueue queue = acquireBindingQueue();
 
-        while (!queue.isEmpty()) {
-            final ViewBindingPair pair = queue.poll();
+        try {
+            queue.add(view, configuration);
 
-            if (pair != null) {
-                final View currentView = pair.view;
-                final ViewConfiguration currentConfiguration = pair.configuration;
+            while (!queue.isEmpty()) {
+                final View currentView = queue.view();
+                final ViewConfiguration currentConfiguration = queue.configuration();
 
-                buildViewTag(currentView, currentConfiguration);
+                queue.poll();
 
-                bindViewBinder(currentView, currentConfiguration);
-                bindAction(currentView, currentConfiguration.getAction());
+                final ViewTag tag = buildViewTag(currentView, currentConfiguration);
+                final long version = currentConfiguration.getVersion();
+                final long treeVersion = currentConfiguration.getTreeVersion();
+                final boolean bound = incremental
+                        && tag.boundConfiguration == currentConfiguration
+                        && hasDatabindingEntry(currentConfiguration.getId());
+
+                if (bound && tag.boundTreeVersion == treeVersion) {
+                    // Nothing changed in this sub-tree since it was bound
+                    continue;
+                }
+
+                if (!bound || tag.boundVersion != version) {
+                    if (bound) {
+                        clickHandler.unsubscribeActions(tag.uuid);
+                    }
+
+                    bindViewBinder(currentView, currentConfiguration);
+                    bindAction(currentView, currentConfiguration.getAction());
+                }
+
+                // Only observed configurations are re-bound by frame, so only they are indexed
+                if (tag.boundConfiguration != currentConfiguration && currentConfiguration.isObserved()) {
+                    indexBoundView(currentView, currentConfiguration);
+                }
+
+                tag.boundConfiguration = currentConfiguration;
+                tag.boundVersion = version;
+                tag.boundTreeVersion = treeVersion;
 
                 final ViewComposite compositeView = buildViewComposite(currentView);
 
                 if (compositeView != null) {
-                    final List<ViewComposite.ViewCompositeChild> viewCompositeChildren = compositeView.getSubViews();
-
-                    for (ViewComposite.ViewCompositeChild compositeChild : viewCompositeChildren) {
+                    for (int i = 0; i < compositeView.getSubViewsCount(); i++) {
+                        final ViewComposite.ViewCompositeChild compositeChild = compositeView.getSubViewAt(i);
                         final String key = compositeChild.key;
 
                         final View childView = compositeChild.view;
@@ -214,16 +272,188 @@ public abstract class DatabindingContext {
                         }
 
                         if (childView != null) {
-                            queue.add(new ViewBindingPair(childView, childConfiguration));
+                            queue.add(childView, childConfiguration);
                         }
                     }
                 }
             }
-
+        } finally {
+            releaseBindingQueue(queue);
         }
 
         if (!configuration.hasParent()) {
-            roots.add(configuration.getId());
+            addRoot(configuration.getId());
+        }
+    }
+
+    /**
+     * Appends the provided root id to the roots history, unless it's already the last one: a
+     * re-bind of the current root would otherwise allocate a node and grow the history on every
+     * call.
+     *
+     * @param id String id of the root configuration.
+     */
+    private void addRoot(String id) {
+        synchronized (roots) {
+            if (roots.isEmpty() || !id.equals(roots.get(roots.size() - 1))) {
+                roots.add(id);
+            }
+        }
+    }
+
+    /**
+     * Enables or disables incremental binding (disabled by default). When enabled, binding a view
+     * which is already bound to the same configuration skips the binders of the configurations
+     * whose content version hasn't changed, and whole sub-trees whose versions haven't changed.
+     * Enable it only if binders display nothing but the data held by the configurations, since an
+     * explicit bind of an unchanged configuration doesn't refresh the view anymore. The per-frame
+     * re-binding of observed configurations is always incremental.
+     *
+     * @param incrementalBinding boolean.
+     */
+    public void setIncrementalBinding(boolean incrementalBinding) {
+        this.incrementalBinding = incrementalBinding;
+    }
+
+    /**
+     * Enables the observable mode on the provided configuration tree: params put on any of its
+     * configurations mark them dirty, and once per frame the views bound to dirty configurations
+     * are re-bound. Many param changes in the same event handler cost one targeted re-bind.
+     *
+     * @param configuration ViewConfiguration root of the tree to observe.
+     */
+    public void observeConfiguration(ViewConfiguration configuration) {
+        if (configuration == null) {
+            return;
+        }
+
+        configuration.setObserver(dirtyObserver);
+
+        // Views bound to the tree before it was observed weren't indexed
+        for (Map.Entry<View, ViewTag> entry : tags.entrySet()) {
+            final ViewConfiguration boundConfiguration = entry.getValue().boundConfiguration;
+
+            if (entry.getKey() != null && boundConfiguration != null && boundConfiguration.isObserved()) {
+                indexBoundView(entry.getKey(), boundConfiguration);
+            }
+        }
+    }
+
+    /**
+     * Disables the observable mode on the provided configuration tree.
+     *
+     * @param configuration ViewConfiguration root of the observed tree.
+     */
+    public void stopObservingConfiguration(ViewConfiguration configuration) {
+        if (configuration == null) {
+            return;
+        }
+
+        configuration.setObserver(null);
+
+        // Configurations no longer observed are never looked up again
+        boundViews.keySet().removeIf(boundConfiguration -> !boundConfiguration.isObserved());
+    }
+
+    /**
+     * Collects a dirty configuration and schedules the re-binding for the next frame, if not
+     * already scheduled.
+     *
+     * @param configuration ViewConfiguration marked dirty.
+     */
+    private void onConfigurationDirty(ViewConfiguration configuration) {
+        synchronized (dirtyConfigurations) {
+            dirtyConfigurations.add(configuration);
+
+            if (frameScheduled) {
+                return;
+            }
+
+            frameScheduled = true;
+        }
+
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            scheduleFrame();
+        } else {
+            runOnUIThread(this::scheduleFrame);
+        }
+    }
+
+    /**
+     * Posts the re-binding of dirty configurations on the next Choreographer frame. Must be called
+     * on the UI main thread.
+     */
+    private void scheduleFrame() {
+        if (frameCallback == null) {
+            frameCallback = frameTimeNanos -> rebindDirtyConfigurations();
+        }
+
+        Choreographer.getInstance().postFrameCallback(frameCallback);
+    }
+
+    /**
+     * Adds the provided view to the views bound to the provided configuration, in observable mode.
+     * Both are weakly held. Views are not removed when unbound, but skipped and dropped when
+     * looked up.
+     *
+     * @param view          Android view.
+     * @param configuration ViewConfiguration bound to the view.
+     */
+    private void indexBoundView(View view, ViewConfiguration configuration) {
+        Set<View> views = boundViews.get(configuration);
+
+        if (views == null) {
+            views = Collections.newSetFromMap(new WeakHashMap<>());
+            boundViews.put(configuration, views);
+        }
+
+        views.add(view);
+    }
+
+    /**
+     * Re-binds every tagged view whose bound configuration is dirty, then clears the dirty flags.
+     * Views are looked up from the dirty configurations, so the cost doesn't depend on the number
+     * of tagged views.
+     * The re-binding is incremental, so only the changed configurations run their binders.
+     */
+    private void rebindDirtyConfigurations() {
+        final List<ViewConfiguration> frameConfigurations;
+
+        synchronized (dirtyConfigurations) {
+            frameConfigurations = new ArrayList<>(dirtyConfigurations);
+            dirtyConfigurations.clear();
+            frameScheduled = false;
+        }
+
+        final List<View> frameViews = new ArrayList<>();
+        final List<ViewConfiguration> boundConfigurations = new ArrayList<>();
+
+        for (ViewConfiguration configuration : frameConfigurations) {
+            final Set<View> views = boundViews.get(configuration);
+
+            if (views == null) {
+                continue;
+            }
+
+            for (Iterator<View> iterator = views.iterator(); iterator.hasNext(); ) {
+                final View view = iterator.next();
+                final ViewTag tag = view != null ? tags.get(view) : null;
+
+                if (tag != null && tag.boundConfiguration == configuration) {
+                    frameViews.add(view);
+                    boundConfigurations.add(configuration);
+                } else {
+                    iterator.remove();
+                }
+            }
+        }
+
+        for (ViewConfiguration configuration : frameConfigurations) {
+            configuration.clearDirty();
+        }
+
+        for (int i = 0; i < frameViews.size(); i++) {
+            bindViewToConfiguration(frameViews.get(i), boundConfigurations.get(i), true);
         }
     }
 
@@ -253,13 +483,16 @@ public abstract class DatabindingContext {
         final ViewConfiguration configuration = getDatabindingEntry(id).configuration;
 
         if (configuration != null) {
-            final Queue<ViewConfiguration> queue = new LinkedList<>();
-            queue.add(configuration);
+            final BindingQueue queue = acquireBindingQueue();
 
-            while (!queue.isEmpty()) {
-                final ViewConfiguration current = queue.poll();
+            try {
+                queue.add(null, configuration);
+
+                while (!queue.isEmpty()) {
+                    final ViewConfiguration current = queue.configuration();
+
+                    queue.poll();
 
-                if (current != null) {
                     final IViewBinder binder = getDatabindingEntry(current.getId()).binder;
 
                     if (binder != null) {
@@ -269,8 +502,10 @@ public abstract class DatabindingContext {
                     entries.remove(current.getId());
                     roots.remove(current.getId());
 
-                    queue.addAll(current.getChildrenConfigurations());
+                    queue.addChildren(current);
                 }
+            } finally {
+                releaseBindingQueue(queue);
             }
         }
     }
@@ -324,47 +559,59 @@ public abstract class DatabindingContext {
             return;
         }
 
-        final Queue<ViewBindingPair> queue = new LinkedList<>();
-        queue.add(new ViewBindingPair(view, configuration));
+        final BindingQueue queue = acquireBindingQueue();
+
+        try {
+            queue.add(view, configuration);
+
+            while (!queue.isEmpty()) {
+                final View currentView = queue.view();
+                final ViewConfiguration viewConfiguration = queue.configuration();
 
-        while (!queue.isEmpty()) {
-            final ViewBindingPair binding = queue.poll();
+                queue.poll();
 
-            if (binding != null) {
-                final ViewTag tag = getViewTag(binding.view);
-                final IViewBinder binder = getDatabindingEntry(binding.configuration.getId()).binder;
+                final ViewTag tag = getViewTag(currentView);
+                final IViewBinder binder = getDatabindingEntry(viewConfiguration.getId()).binder;
 
                 if (binder != null) {
-                    binder.unbindView(this, binding.configuration, binding.view);
+                    binder.unbindView(this, viewConfiguration, currentView);
                 }
 
                 if (tag != null) {
-                    clickHandler.unsubscribeActions(tag.uuid);
-                }
+                    if (remove) {
+                        clickHandler.removeActions(tag.uuid);
+                    } else {
+                        clickHandler.unsubscribeActions(tag.uuid);
+                    }
 
-                if (remove) {
-                    entries.remove(binding.configuration.getId());
-                    tags.remove(binding.view);
+                    tag.boundConfiguration = null;
                 }
 
                 // Unbinding viewComposite views
-                final ViewComposite viewComposite = buildViewComposite(binding.view);
-                final ViewConfiguration viewConfiguration = binding.configuration;
+                final ViewComposite viewComposite = buildViewComposite(currentView);
+
+                if (remove) {
+                    entries.remove(viewConfiguration.getId());
+                    tags.remove(currentView);
+                }
 
                 if (viewComposite != null) {
-                    for (ViewConfiguration childConfiguration : viewConfiguration.getChildrenConfigurations()) {
+                    final List<ViewConfiguration> children = viewConfiguration.getChildrenConfigurations();
+
+                    for (int i = 0; i < children.size(); i++) {
+                        final ViewConfiguration childConfiguration = children.get(i);
                         final ViewComposite.ViewCompositeChild viewCompositeChild =
                                 viewComposite.getSubView(childConfiguration.getKey());
 
                         if (viewCompositeChild != null && viewCompositeChild.view != null) {
-                            queue.add(new ViewBindingPair(viewCompositeChild.view, childConfiguration));
+                            queue.add(viewCompositeChild.view, childConfiguration);
                         }
                     }
                 }
 
                 // Unbinding children that cannot be caught from viewComposite
-                if (binding.view instanceof ViewGroup) {
-                    final ViewGroup viewGroup = (ViewGroup) binding.view;
+                if (currentView instanceof ViewGroup) {
+                    final ViewGroup viewGroup = (ViewGroup) currentView;
 
                     for (int i = 0; i < viewGroup.getChildCount(); i++) {
                         final View childView = viewGroup.getChildAt(i);
@@ -375,28 +622,43 @@ public abstract class DatabindingContext {
                                     viewConfiguration.getChildConfigurationById(childTag.configurationId);
 
                             if (childView != null && childConfiguration != null) {
-                                queue.add(new ViewBindingPair(childView, childConfiguration));
+                                queue.add(childView, childConfiguration);
                             }
                         }
                     }
                 }
             }
+        } finally {
+            releaseBindingQueue(queue);
         }
     }
 
     /**
-     * Class representing a pair consisting of an Android view and his ViewConfiguration data.
+     * Returns a BindingQueue from the pool owned by this context, creating it if the pool is
+     * empty. Nested traversals (a binder binding another tree while being bound) take their own
+     * queue, so after the first binds no queue is allocated anymore.
+     *
+     * @return an empty BindingQueue.
      */
-    private static final class ViewBindingPair {
-
-        private final View view;
-        private final ViewConfiguration configuration;
+    private BindingQueue acquireBindingQueue() {
+        synchronized (queuePool) {
+            final BindingQueue queue = queuePool.poll();
 
-        private ViewBindingPair(View view, ViewConfiguration configuration) {
-            this.view = view;
-            this.configuration = configuration;
+            return queue != null ? queue : new BindingQueue();
         }
+    }
 
+    /**
+     * Clears the provided queue and gives it back to the pool.
+     *
+     * @param queue BindingQueue to release.
+     */
+    private void releaseBindingQueue(BindingQueue queue) {
+        queue.clear();
+
+        synchronized (queuePool) {
+            queuePool.push(queue);
+        }
     }
 
     /**
@@ -584,21 +846,25 @@ public abstract class DatabindingContext {
             return;
         }
 
-        final Queue<ViewConfiguration> configurations = new LinkedList<>();
-        configurations.add(configuration);
+        final BindingQueue queue = acquireBindingQueue();
+
+        try {
+            queue.add(null, configuration);
 
-        while (!configurations.isEmpty()) {
-            final ViewConfiguration current = configurations.poll();
+            while (!queue.isEmpty()) {
+                final ViewConfiguration current = queue.configuration();
 
-            if (current != null && !entries.containsKey(current.getId())) {
-                createDatabindingEntry(current);
-            }
+                queue.poll();
+
+                if (!entries.containsKey(current.getId())) {
+                    createDatabindingEntry(current);
+                }
 
-            if (current != null) {
-                configurations.addAll(current.getChildrenConfigurations());
+                queue.addChildren(current);
             }
+        } finally {
+            releaseBindingQueue(queue);
         }
-
     }
 
     /**
@@ -658,7 +924,8 @@ public abstract class DatabindingContext {
     /**
      * Tags a view to identify it thought his lifecycle. Supports null configuration, in case of
      * bindings actions or view specific components before the view is bind with his configuration.
-     * Later the configurationId will be valued.
+     * Later the configurationId will be valued. Recycled views are re-pointed to the configuration
+     * they are currently bound to.
      *
      * @param view Android view to be tagged.
      * @param configuration IViewConfiguration correlate to the view.
@@ -681,9 +948,7 @@ public abstract class DatabindingContext {
                 tags.put(view, tag);
             }
         } else if (configuration != null) {
-            if (tag.configurationId == null) {
-                tag.configurationId = configuration.getId();
-            }
+            tag.configurationId = configuration.getId();
         }
 
         return tag;
@@ -764,19 +1029,40 @@ public abstract class DatabindingContext {
         if (action != null) {
             clickHandler.subscribeAction(tag.uuid, action);
 
-            final ViewTag finalTag = tag;
-            view.setOnClickListener(v -> clickHandler.executeActions(finalTag.uuid));
+            if (tag.clickListener == null) {
+                final ViewTag finalTag = tag;
+                tag.clickListener = v -> clickHandler.executeActions(finalTag.uuid);
+            }
+
+            view.setOnClickListener(tag.clickListener);
         }
     }
 
     /**
-     * Builds the composite view from the @CompositeView annotated android view provided.
+     * Builds the composite view from the @CompositeView annotated android view provided. Since the
+     * sub-views of a custom view never change after construction, the composite is built once and
+     * then stored as a keyed tag of the view. The composite references the view's sub-views, which
+     * reference the view through their parent, so it must not be held by the ViewTag: tags are the
+     * values of a WeakHashMap keyed by the view, and that would keep the view strongly reachable.
      *
      * @param view Android view.
      * @return IViewComposite mapping.
      */
     private ViewComposite buildViewComposite(View view) {
-        return viewCompositeFactory.build(view);
+        final Object cached = view.getTag(R.id.uidroid_view_composite);
+
+        if (cached == NO_COMPOSITE) {
+            return null;
+        }
+
+        if (cached instanceof ViewComposite) {
+            return (ViewComposite) cached;
+        }
+
+        final ViewComposite composite = viewCompositeFactory.build(view);
+        view.setTag(R.id.uidroid_view_composite, composite != null ? composite : NO_COMPOSITE);
+
+        return composite;
     }
 
     /**
@@ -851,6 +1137,12 @@ public abstract class DatabindingContext {
 
         public Object data;
 
+        private View.OnClickListener clickListener;
+
+        private ViewConfiguration boundConfiguration;
+        private long boundVersion;
+        private long boundTreeVersion;
+
         public ViewTag(Integer uuid) {
             this.uuid = uuid;
         }
@@ -25,7 +25,7 @@ public class GenericPagerAdapter extends PagerAdapter {
     }
 
     public int getCount() {
-        return configuration.getChildrenConfigurations(filter).size();
+        return configuration.getFilteredChildrenConfigurations(filter).size();
     }
 
     public boolean isViewFromObject(@NonNull View view, @NonNull Object object) {
@@ -34,12 +34,11 @@ public class GenericPagerAdapter extends PagerAdapter {
 
     @NonNull
     public Object instantiateItem(@NonNull ViewGroup container, int position) {
-        final ViewConfiguration model = configuration.getChildrenConfigurations(filter).get(position);
+        final ViewConfiguration model = configuration.getFilteredChildrenConfigurations(filter).get(position);
         final View view = databindingContext.buildView(container.getContext(), model.getViewType());
 
         container.addView(view);
-        databindingContext.bindViewToConfiguration(view,
-                configuration.getChildrenConfigurations(filter).get(position));
+        databindingContext.bindViewToConfiguration(view, model);
 
         return view;
     }
@@ -4,12 +4,17 @@ import android.view.View;
 import android.view.ViewGroup;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.uidroid.uidroid.DatabindingContext;
 import com.uidroid.uidroid.model.ViewConfiguration;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The only adapter needed for bind any ViewConfiguration object into an Android RecyclerView.
@@ -20,6 +25,14 @@ public class GenericRecyclerViewAdapter extends RecyclerView.Adapter<GenericView
     private final DatabindingContext databindingContext;
     private final ViewConfiguration configuration;
 
+    private static final ExecutorService diffExecutor = Executors.newSingleThreadExecutor();
+
+    private final ViewTypeRegistry viewTypeRegistry = new ViewTypeRegistry();
+    // Bumped by every change of the children, so a diff computed against an older snapshot is
+    // never dispatched
+    private final AtomicInteger generation = new AtomicInteger();
+    private final AtomicInteger submitGeneration = new AtomicInteger();
+
     private ViewConfiguration.IViewConfigurationFilter filter;
 
     /**
@@ -39,20 +52,31 @@ public class GenericRecyclerViewAdapter extends RecyclerView.Adapter<GenericView
     @NonNull
     @Override
     public GenericViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-        final ViewConfiguration holderConfiguration = configuration.getChildrenConfigurations(filter).get(viewType);
-        final View view = databindingContext.buildView(parent.getContext(), holderConfiguration.getViewType());
+        final View view = databindingContext.buildView(parent.getContext(),
+                viewTypeRegistry.getViewType(viewType));
 
-        return new GenericViewHolder(view, holderConfiguration);
+        return new GenericViewHolder(view, null);
     }
 
     @Override
     public void onBindViewHolder(@NonNull GenericViewHolder holder, int position) {
+        final ViewConfiguration model = getItem(position);
+
+        // A holder rebound in place to another item must drop the actions of the previous one
+        if (holder.model != null && holder.model != model) {
+            databindingContext.unbindView(holder.itemView, holder.model);
+        }
+
+        holder.model = model;
         databindingContext.bindViewToConfiguration(holder.itemView, holder.model);
     }
 
     @Override
     public void onViewRecycled(@NonNull GenericViewHolder holder) {
-        databindingContext.unbindView(holder.itemView, holder.model);
+        if (holder.model != null) {
+            databindingContext.unbindView(holder.itemView, holder.model);
+            holder.model = null;
+        }
         super.onViewRecycled(holder);
     }
 
@@ -75,9 +99,10 @@ public class GenericRecyclerViewAdapter extends RecyclerView.Adapter<GenericView
      * @param childConfiguration IViewConfiguration representing the new item for the list.
      */
     public void addItem(String key, ViewConfiguration childConfiguration) {
+        generation.incrementAndGet();
         configuration.addChildConfiguration(key, childConfiguration);
         databindingContext.runOnUIThread(() ->
-                notifyItemInserted(configuration.getChildrenConfigurations(filter).size()));
+                notifyItemInserted(getItemCount()));
     }
 
     /**
@@ -104,7 +129,8 @@ public class GenericRecyclerViewAdapter extends RecyclerView.Adapter<GenericView
         final int position = itemPositionByKey(key);
 
         if (position != -1) {
-            configuration.removeChildByFilter((key1, model) -> key1.equals(key));
+            generation.incrementAndGet();
+            configuration.removeChildByFilter((key1, model) -> key.equals(key1));
 
             notifyItemRemoved(position);
         }
@@ -116,13 +142,54 @@ public class GenericRecyclerViewAdapter extends RecyclerView.Adapter<GenericView
      * @param position integer for the position desired.
      */
     public synchronized void removeItem(int position) {
-        if (position >= 0 && position < configuration.getChildrenConfigurations(filter).size()) {
+        if (position >= 0 && position < getItemCount()) {
+            generation.incrementAndGet();
             configuration.removeChildByPosition(position, filter);
 
             notifyItemRemoved(position);
         }
     }
 
+    /**
+     * Replaces the displayed children with the provided configurations. The old and new lists are
+     * diffed on a background thread, using configuration ids for identity and content hashes for
+     * equality, then only the inserted, moved, removed and changed items are notified on the UI
+     * thread. Unchanged items keep their currently bound configuration instance. If another
+     * submission happens before the diff completes, this one is discarded. If the children are
+     * changed by addItem or removeItem meanwhile, the diff is computed again against them.
+     *
+     * @param key String key for the new children, which must be admissible by the adapter filter.
+     * @param configurations List of ViewConfiguration representing the new items for the list.
+     */
+    public void submitConfigurations(@NonNull String key, List<ViewConfiguration> configurations) {
+        final List<ViewConfiguration> oldItems = new ArrayList<>(getItems());
+        final List<ViewConfiguration> newItems = new ArrayList<>(configurations);
+        final int generation = this.generation.incrementAndGet();
+
+        submitGeneration.set(generation);
+
+        diffExecutor.execute(() -> {
+            final ViewConfigurationDiffCallback callback =
+                    new ViewConfigurationDiffCallback(oldItems, newItems);
+            final DiffUtil.DiffResult result = DiffUtil.calculateDiff(callback);
+            final List<ViewConfiguration> items = callback.getMergedItems();
+
+            databindingContext.runOnUIThread(() -> {
+                if (generation != this.generation.get()) {
+                    // Diff again against the current children, unless a newer submission replaces
+                    // them anyway
+                    if (generation == submitGeneration.get()) {
+                        submitConfigurations(key, configurations);
+                    }
+                    return;
+                }
+
+                configuration.replaceChildrenConfigurations(filter, key, items);
+                result.dispatchUpdatesTo(this);
+            });
+        });
+    }
+
     /**
      * Finds and returns the position of the first element which has the specified key and satisfy
      * the provided filter.
@@ -131,29 +198,25 @@ public class GenericRecyclerViewAdapter extends RecyclerView.Adapter<GenericView
      * @return integer for the position.
      */
     public int itemPositionByKey(String key) {
-        int position = 0;
-        boolean found = false;
+        final List<ViewConfiguration> items = configuration.getFilteredChildrenConfigurations(filter);
 
-        for (ViewConfiguration configuration: configuration.getChildrenConfigurations(filter)) {
-            if (configuration.getKey().equals(key)) {
-                found = true;
-                break;
+        for (int position = 0; position < items.size(); position++) {
+            if (key.equals(items.get(position).getKey())) {
+                return position;
             }
-
-            position++;
         }
 
-        return found ? position : -1;
+        return -1;
     }
 
     @Override
     public int getItemCount() {
-        return configuration.getChildrenConfigurations(filter).size();
+        return configuration.getFilteredChildrenConfigurations(filter).size();
     }
 
     @Override
     public int getItemViewType(int position) {
-        return position;
+        return viewTypeRegistry.getItemViewType(getItem(position));
     }
 
     /**
@@ -172,7 +235,7 @@ public class GenericRecyclerViewAdapter extends RecyclerView.Adapter<GenericView
      * @return the IViewConfiguration at the given index.
      */
     public ViewConfiguration getItem(int index) {
-        return configuration.getChildrenConfigurations(filter).get(index);
+        return configuration.getFilteredChildrenConfigurations(filter).get(index);
     }
 
     /**
@@ -181,8 +244,9 @@ public class GenericRecyclerViewAdapter extends RecyclerView.Adapter<GenericView
      * @param filter ViewConfiguration.IViewConfigurationFilter filter object.
      */
     public void setFilter(ViewConfiguration.IViewConfigurationFilter filter) {
+        generation.incrementAndGet();
         this.filter = filter;
-        notifyItemRangeChanged(0, configuration.getChildrenConfigurations(filter).size());
+        notifyItemRangeChanged(0, getItemCount());
     }
 
 }
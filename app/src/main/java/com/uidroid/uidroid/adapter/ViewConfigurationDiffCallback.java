@@ -0,0 +1,88 @@
+package com.uidroid.uidroid.adapter;
+
+import androidx.recyclerview.widget.DiffUtil;
+
+import com.uidroid.uidroid.model.ViewConfiguration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DiffUtil callback comparing two lists of ViewConfigurations: items are the same when their ids
+ * match, and their contents are the same when their content hashes match. Hashes are computed
+ * once at construction time, so this object is meant to be built off the main thread.
+ */
+final class ViewConfigurationDiffCallback extends DiffUtil.Callback {
+
+    private final List<ViewConfiguration> oldItems;
+    private final List<ViewConfiguration> newItems;
+
+    private final int[] oldHashes;
+    private final int[] newHashes;
+
+    ViewConfigurationDiffCallback(List<ViewConfiguration> oldItems, List<ViewConfiguration> newItems) {
+        this.oldItems = oldItems;
+        this.newItems = newItems;
+        this.oldHashes = new int[oldItems.size()];
+        this.newHashes = new int[newItems.size()];
+
+        for (int i = 0; i < oldHashes.length; i++) {
+            oldHashes[i] = oldItems.get(i).getContentHash();
+        }
+
+        for (int i = 0; i < newHashes.length; i++) {
+            newHashes[i] = newItems.get(i).getContentHash();
+        }
+    }
+
+    @Override
+    public int getOldListSize() {
+        return oldItems.size();
+    }
+
+    @Override
+    public int getNewListSize() {
+        return newItems.size();
+    }
+
+    @Override
+    public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+        return oldItems.get(oldItemPosition).getId().equals(newItems.get(newItemPosition).getId());
+    }
+
+    @Override
+    public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+        return oldHashes[oldItemPosition] == newHashes[newItemPosition];
+    }
+
+    /**
+     * Returns the new list where every item unchanged with respect to the old list is replaced by
+     * its old instance, so the views which won't be re-bound stay paired with their configuration.
+     *
+     * @return List of ViewConfiguration to display.
+     */
+    List<ViewConfiguration> getMergedItems() {
+        final Map<String, Integer> oldPositions = new HashMap<>();
+
+        for (int i = 0; i < oldItems.size(); i++) {
+            oldPositions.put(oldItems.get(i).getId(), i);
+        }
+
+        final List<ViewConfiguration> merged = new ArrayList<>(newItems.size());
+
+        for (int i = 0; i < newItems.size(); i++) {
+            final Integer oldPosition = oldPositions.get(newItems.get(i).getId());
+
+            if (oldPosition != null && oldHashes[oldPosition] == newHashes[i]) {
+                merged.add(oldItems.get(oldPosition));
+            } else {
+                merged.add(newItems.get(i));
+            }
+        }
+
+        return merged;
+    }
+
+}
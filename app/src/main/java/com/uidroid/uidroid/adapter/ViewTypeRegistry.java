@@ -0,0 +1,72 @@
+package com.uidroid.uidroid.adapter;
+
+import com.uidroid.uidroid.model.ViewConfiguration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class which assigns a stable integer view type to each distinct (viewType, binderType) pair of
+ * the configurations displayed by an adapter. Configurations sharing the same pair are rendered by
+ * the same kind of view, so their holders can be recycled between each other.
+ */
+public final class ViewTypeRegistry {
+
+    private static final String DEFAULT_BINDER_TYPE = "";
+
+    private final Map<String, Map<String, Integer>> types = new HashMap<>();
+    private final List<String> viewTypes = new ArrayList<>();
+
+    /**
+     * Returns the integer type for the provided configuration, registering it if it's the first
+     * configuration seen with its (viewType, binderType) pair.
+     *
+     * @param configuration ViewConfiguration to classify.
+     * @return int stable view type.
+     */
+    public synchronized int getItemViewType(ViewConfiguration configuration) {
+        final String viewType = configuration.getViewType();
+        final String binderType = configuration.getBinderType() != null
+                ? configuration.getBinderType()
+                : DEFAULT_BINDER_TYPE;
+
+        Map<String, Integer> binders = types.get(viewType);
+
+        if (binders == null) {
+            binders = new HashMap<>();
+            types.put(viewType, binders);
+        }
+
+        Integer type = binders.get(binderType);
+
+        if (type == null) {
+            type = viewTypes.size();
+            viewTypes.add(viewType);
+            binders.put(binderType, type);
+        }
+
+        return type;
+    }
+
+    /**
+     * Returns the view type string registered for the provided integer type.
+     *
+     * @param type int view type previously returned by getItemViewType.
+     * @return String view type, used to build the view.
+     */
+    public synchronized String getViewType(int type) {
+        return viewTypes.get(type);
+    }
+
+    /**
+     * Returns the number of distinct view types registered so far.
+     *
+     * @return int count of view types.
+     */
+    public synchronized int size() {
+        return viewTypes.size();
+    }
+
+}
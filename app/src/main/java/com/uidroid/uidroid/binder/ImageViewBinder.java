@@ -6,6 +6,7 @@ import android.widget.ImageView;
 import com.uidroid.annotation.UI;
 import com.uidroid.uidroid.DatabindingContext;
 import com.uidroid.uidroid.loader.ImageRequest;
+import com.uidroid.uidroid.model.ParamKey;
 import com.uidroid.uidroid.model.ViewConfiguration;
 
 import java.util.Objects;
@@ -19,6 +20,15 @@ public class ImageViewBinder<V extends ImageView> extends ViewBinder<V> {
     public static final String RESOURCE_ID = "resourceId";
     public static final String PLACE_HOLDER = "placeHolder";
     public static final String FILE = "file";
+    public static final String FIT_VIEW = "fitView";
+
+    public static final int SIZE_ID = ParamKey.getId(SIZE);
+    public static final int COLOR_ID = ParamKey.getId(COLOR);
+    public static final int URL_ID = ParamKey.getId(URL);
+    public static final int RESOURCE_ID_ID = ParamKey.getId(RESOURCE_ID);
+    public static final int PLACE_HOLDER_ID = ParamKey.getId(PLACE_HOLDER);
+    public static final int FILE_ID = ParamKey.getId(FILE);
+    public static final int FIT_VIEW_ID = ParamKey.getId(FIT_VIEW);
 
     @Override
     public void doBind(V view, ViewConfiguration configuration, DatabindingContext databindingContext) {
@@ -27,21 +37,24 @@ public class ImageViewBinder<V extends ImageView> extends ViewBinder<V> {
     }
 
     private void handleImage(V view, ViewConfiguration configuration, DatabindingContext databindingContext) {
-        final Integer placeHolder = configuration.getIntegerParam(PLACE_HOLDER);
-        final Integer size = configuration.getIntegerParam(SIZE);
+        final Integer placeHolder = configuration.getIntegerParam(PLACE_HOLDER_ID);
+        final Integer size = configuration.getIntegerParam(SIZE_ID);
 
         String source = null;
 
         ImageRequest.Builder request = new ImageRequest.Builder();
 
-        if (configuration.getStringParam(URL) != null) {
-            source = configuration.getStringParam(URL);
+        if (configuration.getStringParam(URL_ID) != null) {
+            source = configuration.getStringParam(URL_ID);
+            request.sourceType(ImageRequest.SourceType.URL);
         }
-        if (configuration.getIntegerParam(RESOURCE_ID) != null) {
-            source = Objects.requireNonNull(configuration.getIntegerParam(RESOURCE_ID)).toString();
+        if (configuration.getIntegerParam(RESOURCE_ID_ID) != null) {
+            source = Objects.requireNonNull(configuration.getIntegerParam(RESOURCE_ID_ID)).toString();
+            request.sourceType(ImageRequest.SourceType.RESOURCE);
         }
-        if (configuration.getStringParam(FILE) != null) {
-            source = configuration.getStringParam(FILE);
+        if (configuration.getStringParam(FILE_ID) != null) {
+            source = configuration.getStringParam(FILE_ID);
+            request.sourceType(ImageRequest.SourceType.FILE);
         }
 
         if (placeHolder != null) {
@@ -50,6 +63,9 @@ public class ImageViewBinder<V extends ImageView> extends ViewBinder<V> {
         if (size != null) {
             request.requiredSize(size);
         }
+        if (configuration.getBooleanParam(FIT_VIEW_ID, false)) {
+            request.sizingMode(ImageRequest.SizingMode.VIEW_BOUNDS);
+        }
 
         if (source != null) {
             databindingContext.getImageLoader().load(view, request.source(source).build());
@@ -59,7 +75,7 @@ public class ImageViewBinder<V extends ImageView> extends ViewBinder<V> {
     }
 
     private void handleColor(V view, ViewConfiguration configuration) {
-        final Integer color = configuration.getIntegerParam(COLOR);
+        final Integer color = configuration.getIntegerParam(COLOR_ID);
 
         if (color != null) {
             view.setColorFilter(color);
@@ -68,12 +84,19 @@ public class ImageViewBinder<V extends ImageView> extends ViewBinder<V> {
 
     @Override
     public void doUnbind(V view, ViewConfiguration configuration, DatabindingContext databindingContext) {
-        databindingContext.getImageLoader().cancel(configuration.getStringParam(URL));
+        databindingContext.getImageLoader().cancel(view);
     }
 
     @Override
     public void doRemove(DatabindingContext databindingContext, ViewConfiguration configuration) {
-        databindingContext.getImageLoader().cancel(configuration.getStringParam(URL));
+        // A removed configuration is never rebound, so its loads are cancelled for every view
+        final String source = configuration.getStringParam(FILE_ID) != null
+                ? configuration.getStringParam(FILE_ID)
+                : configuration.getStringParam(URL_ID);
+
+        if (source != null) {
+            databindingContext.getImageLoader().cancel(source);
+        }
     }
 
 }
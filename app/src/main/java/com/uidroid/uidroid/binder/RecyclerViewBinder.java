@@ -9,6 +9,7 @@ import androidx.recyclerview.widget.SnapHelper;
 
 import com.uidroid.uidroid.DatabindingContext;
 import com.uidroid.uidroid.adapter.GenericRecyclerViewAdapter;
+import com.uidroid.uidroid.model.ParamKey;
 import com.uidroid.uidroid.model.ViewConfiguration;
 
 @SuppressWarnings("unused")
@@ -26,6 +27,10 @@ public class RecyclerViewBinder<V extends RecyclerView, L extends RecyclerViewBi
     public final static String RECYCLER_VIEW_COLUMNS = "recyclerViewColumns";
     public final static String RECYCLER_VIEW_LIST = "recyclerViewList";
 
+    public static final int RECYCLER_VIEW_TYPE_ID = ParamKey.getId(RECYCLER_VIEW_TYPE);
+    public static final int RECYCLER_VIEW_ITEM_SPAN_SIZE_ID = ParamKey.getId(RECYCLER_VIEW_ITEM_SPAN_SIZE);
+    public static final int RECYCLER_VIEW_COLUMNS_ID = ParamKey.getId(RECYCLER_VIEW_COLUMNS);
+
     protected int currentPosition = 0;
 
     protected ViewConfiguration.IViewConfigurationFilter filter;
@@ -51,7 +56,7 @@ public class RecyclerViewBinder<V extends RecyclerView, L extends RecyclerViewBi
     }
 
     protected void handleType(V view, ViewConfiguration configuration, DatabindingContext databindingContext) {
-        final String type = configuration.getStringParam(RECYCLER_VIEW_TYPE, Type.VERTICAL);
+        final String type = configuration.getStringParam(RECYCLER_VIEW_TYPE_ID, Type.VERTICAL);
 
         if (type.equals(Type.VERTICAL)) {
             handleVertical(view, configuration, databindingContext);
@@ -71,13 +76,13 @@ public class RecyclerViewBinder<V extends RecyclerView, L extends RecyclerViewBi
     }
 
     protected void handleGrid(V view, ViewConfiguration configuration, DatabindingContext databindingContext) {
-        layoutManager = new GridLayoutManager(view.getContext(),
-                configuration.getIntegerParam(RECYCLER_VIEW_COLUMNS, 1));
+        final int columns = configuration.getIntegerParam(RECYCLER_VIEW_COLUMNS_ID, 1);
+
+        layoutManager = new GridLayoutManager(view.getContext(), columns);
         ((GridLayoutManager) layoutManager).setSpanSizeLookup(new GridLayoutManager.SpanSizeLookup() {
             @Override
             public int getSpanSize(int position) {
-                return adapter.getItem(position).getIntegerParam(RECYCLER_VIEW_ITEM_SPAN_SIZE,
-                                configuration.getIntegerParam(RECYCLER_VIEW_COLUMNS, 1));
+                return adapter.getItem(position).getIntegerParam(RECYCLER_VIEW_ITEM_SPAN_SIZE_ID, columns);
             }
         });
     }
@@ -98,7 +103,7 @@ public class RecyclerViewBinder<V extends RecyclerView, L extends RecyclerViewBi
     }
 
     protected void handleFilter(V view, ViewConfiguration configuration, DatabindingContext databindingContext) {
-        filter = (key, configuration1) -> key.equals(RECYCLER_VIEW_LIST);
+        filter = (key, configuration1) -> RECYCLER_VIEW_LIST.equals(key);
     }
 
     protected void handleAdapter(V view, ViewConfiguration configuration, DatabindingContext databindingContext) {
@@ -6,6 +6,7 @@ import android.view.View;
 import android.widget.TextView;
 
 import com.uidroid.uidroid.DatabindingContext;
+import com.uidroid.uidroid.model.ParamKey;
 import com.uidroid.uidroid.model.ViewConfiguration;
 
 @SuppressWarnings("unused")
@@ -28,6 +29,11 @@ public class TextViewBinder<V extends TextView> extends ListenerViewBinder<V, Ed
     public static final String FACE = "face";
     public static final String GRAVITY = "gravity";
 
+    public static final int TEXT_ID = ParamKey.getId(TEXT);
+    public static final int COLOR_ID = ParamKey.getId(COLOR);
+    public static final int FACE_ID = ParamKey.getId(FACE);
+    public static final int GRAVITY_ID = ParamKey.getId(GRAVITY);
+
     @Override
     public void doBind(V view, ViewConfiguration configuration, DatabindingContext databindingContext) {
         handleText(view, configuration);
@@ -37,15 +43,17 @@ public class TextViewBinder<V extends TextView> extends ListenerViewBinder<V, Ed
     }
 
     private void handleText(V view, ViewConfiguration configuration) {
-        if (configuration.getStringParam(TEXT) != null) {
-            view.setText(configuration.getStringParam(TEXT));
+        final String text = configuration.getStringParam(TEXT_ID);
+
+        if (text != null) {
+            view.setText(text);
         } else {
             view.setVisibility(View.GONE);
         }
     }
 
     private void handleGravity(V view, ViewConfiguration configuration) {
-        final Integer gravity = configuration.getIntegerParam(GRAVITY);
+        final Integer gravity = configuration.getIntegerParam(GRAVITY_ID);
 
         if (gravity != null) {
             view.setGravity(gravity);
@@ -53,7 +61,7 @@ public class TextViewBinder<V extends TextView> extends ListenerViewBinder<V, Ed
     }
 
     private void handleColor(V view, ViewConfiguration configuration) {
-        final Integer color = configuration.getIntegerParam(COLOR);
+        final Integer color = configuration.getIntegerParam(COLOR_ID);
 
         if (color != null) {
             view.setTextColor(color);
@@ -61,7 +69,7 @@ public class TextViewBinder<V extends TextView> extends ListenerViewBinder<V, Ed
     }
 
     private void handleFace(V view, ViewConfiguration configuration) {
-        final Integer face = configuration.getIntegerParam(FACE);
+        final Integer face = configuration.getIntegerParam(FACE_ID);
 
         if (face != null) {
             view.setTypeface(null, face);
@@ -4,7 +4,6 @@ import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class ClickHandler implements IClickHandler {
@@ -19,9 +18,14 @@ public class ClickHandler implements IClickHandler {
     @Override
     public synchronized void subscribeAction(Integer id, IViewAction action) {
         if (id != null && action != null) {
-            actions.computeIfAbsent(id, k -> new ArrayList<>());
+            List<IViewAction> actionsForId = actions.get(id);
 
-            Objects.requireNonNull(actions.get(id)).add(action);
+            if (actionsForId == null) {
+                actionsForId = new ArrayList<>();
+                actions.put(id, actionsForId);
+            }
+
+            actionsForId.add(action);
         }
     }
 
@@ -40,9 +44,31 @@ public class ClickHandler implements IClickHandler {
         }
     }
 
+    /**
+     * Clears the actions subscribed for the provided id, keeping the list itself: a recycled view
+     * is unbound and bound again with the same id, so its next subscription reuses the list
+     * instead of allocating a new one.
+     *
+     * @param id Integer id of the view.
+     */
     @Override
     public synchronized void unsubscribeActions(Integer id) {
-        actions.remove(id);
+        if (id == null) {
+            return;
+        }
+
+        final List<IViewAction> actionsForId = actions.get(id);
+
+        if (actionsForId != null) {
+            actionsForId.clear();
+        }
+    }
+
+    @Override
+    public synchronized void removeActions(Integer id) {
+        if (id != null) {
+            actions.remove(id);
+        }
     }
 
 }
@@ -6,4 +6,14 @@ public interface IClickHandler {
     void executeActions(Integer id);
     void unsubscribeActions(Integer id);
 
+    /**
+     * Releases everything held for the provided id, once the view it identifies is not going to
+     * be bound anymore. By default it's the same as unsubscribeActions.
+     *
+     * @param id Integer id of the view.
+     */
+    default void removeActions(Integer id) {
+        unsubscribeActions(id);
+    }
+
 }
@@ -7,4 +7,14 @@ public interface IImageLoader {
     void load(ImageView view, ImageRequest image);
     void cancel(String id);
 
+    /**
+     * Detaches the provided view from the request it's waiting for, when it's unbound or rebound.
+     * Loaders that don't track views have nothing to detach.
+     *
+     * @param view ImageView to detach.
+     */
+    default void cancel(ImageView view) {
+
+    }
+
 }
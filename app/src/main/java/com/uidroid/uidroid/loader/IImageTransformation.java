@@ -0,0 +1,14 @@
+package com.uidroid.uidroid.loader;
+
+import android.graphics.Bitmap;
+
+/**
+ * Transformation applied to a bitmap after it's decoded, before it's cached. The key identifies
+ * the transformation in the cache keys, so two different transformations must have different keys.
+ */
+public interface IImageTransformation {
+
+    Bitmap transform(Bitmap bitmap);
+    String getKey();
+
+}
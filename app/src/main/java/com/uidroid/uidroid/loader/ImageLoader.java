@@ -4,140 +4,517 @@ import android.content.Context;
 import android.graphics.Bitmap;
 import android.os.Handler;
 import android.os.Looper;
-import android.util.Patterns;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import android.widget.ImageView;
 
 import androidx.core.os.HandlerCompat;
 
+import com.uidroid.uidroid.DatabindingLogger;
 import com.uidroid.uidroid.Utils;
 import com.uidroid.uidroid.loader.cache.ImageCache;
+import com.uidroid.uidroid.loader.worker.ImageContentUriWorker;
+import com.uidroid.uidroid.loader.worker.ImageDiskCacheWorker;
 import com.uidroid.uidroid.loader.worker.ImageFileWorker;
 import com.uidroid.uidroid.loader.worker.ImageResourceWorker;
 import com.uidroid.uidroid.loader.worker.ImageUrlWorker;
+import com.uidroid.uidroid.loader.worker.ImageWorker;
 
 import java.io.File;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.FutureTask;
+import java.util.concurrent.Future;
 
 public final class ImageLoader implements IImageLoader {
 
     private static final int NUMBER_OF_THREADS = Runtime.getRuntime().availableProcessors();
 
+    private final Context context;
     private final ExecutorService executorService;
+    private final ExecutorService diskExecutorService;
     private final Handler handler;
 
     private final ImageCache cache;
-    private final Map<String, FutureTask<Void>> tasks = new HashMap<>();
+    private final Map<String, InFlightRequest> requests = new HashMap<>();
+    private final Map<ImageView, InFlightRequest> targets = new WeakHashMap<>();
+
+    // Bitmaps are pooled for reuse only once they're out of the memory cache and no view displays
+    // them, nor a completed request is about to
+    private final Map<ImageView, Bitmap> displayed = new WeakHashMap<>();
+    private final Map<Bitmap, Integer> references = new IdentityHashMap<>();
+    private final Set<Bitmap> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    // Views waiting for their layout pass to know the size to decode to
+    private final Map<ImageView, ViewTreeObserver.OnPreDrawListener> layouts = new WeakHashMap<>();
 
     public interface ImageCallback {
-        void onSuccess(Bitmap bitmap, ImageView imageView, ImageRequest imageRequest);
+        void onSuccess(Bitmap bitmap, ImageRequest imageRequest);
         void onError(Throwable exception);
+
+        /**
+         * Called by the worker once it's done writing a bitmap delivered by onSuccess to the
+         * caches, even if writing it failed.
+         *
+         * @param bitmap Bitmap delivered by onSuccess.
+         */
+        default void onCached(Bitmap bitmap) {
+
+        }
+    }
+
+    /**
+     * Single fetch and decode of an image, shared by all the views waiting for the same key. Each
+     * view is stored with its own request, to show its own placeholder. The task is first the disk
+     * cache lookup, then the worker if the disk cache missed.
+     */
+    private static final class InFlightRequest {
+
+        private final String key;
+        private final String source;
+        private final Map<ImageView, ImageRequest> targets = new HashMap<>();
+        private Future<?> task;
+        private boolean cancelled;
+
+        private InFlightRequest(String key, String source) {
+            this.key = key;
+            this.source = source;
+        }
+
     }
 
     public ImageLoader(Context context) {
-        cache = new ImageCache(context);
+        this(context, new ImageCache(context));
+    }
+
+    public ImageLoader(Context context, ImageCache cache) {
+        this.context = context.getApplicationContext();
+        this.cache = cache;
         executorService = Executors.newFixedThreadPool(NUMBER_OF_THREADS);
+        diskExecutorService = Executors.newSingleThreadExecutor();
         handler = HandlerCompat.createAsync(Looper.getMainLooper());
+
+        cache.setBitmapRemovedListener(this::onBitmapRemoved);
     }
 
-    public void load(ImageView view, ImageRequest request) {
+    public synchronized void load(ImageView view, ImageRequest request) {
         if (request.getSource() == null) {
+            detach(view);
+            return;
+        }
+
+        if (request.getSizingMode() == ImageRequest.SizingMode.VIEW_BOUNDS && !request.hasTargetSize()) {
+            final ImageRequest sized = getSizedRequest(view, request);
+
+            if (sized == null) {
+                loadAfterLayout(view, request);
+                return;
+            }
+
+            request = sized;
+        }
+
+        final String key = getKey(request);
+        final InFlightRequest current = targets.get(view);
+
+        // The view is already waiting for this image
+        if (current != null && current.key.equals(key)) {
+            current.targets.put(view, request);
             return;
         }
 
-        view.setTag(request.getSource());
+        detach(view);
 
-        Bitmap bitmap = cache.get(request.getSource());
+        Bitmap bitmap = cache.getFromMemory(request);
         if (bitmap != null) {
-            view.setImageBitmap(bitmap);
+            show(view, bitmap);
             return;
         }
 
         view.setScaleType(request.getScaleType());
         view.setImageResource(request.getPlaceHolder());
+        release(displayed.remove(view));
 
-        final ImageCallback callback = new ImageCallback() {
-            @Override
-            public void onSuccess(Bitmap bitmap, ImageView view, ImageRequest request) {
-                if (view.getTag() == null || view.getTag() != request.getSource()) {
-                    tasks.remove(request.getSource());
-                }
+        InFlightRequest inFlightRequest = requests.get(key);
+
+        if (inFlightRequest == null) {
+            final InFlightRequest lookup = new InFlightRequest(key, request.getSource());
 
-                handler.post(() -> {
-                    if (bitmap != null) {
-                        view.setImageBitmap(bitmap);
-                    } else {
-                        view.setImageResource(request.getPlaceHolder());
-                    }
+            requests.put(key, lookup);
+            lookup.task = diskExecutorService.submit(() -> lookupDisk(lookup, request));
+            inFlightRequest = lookup;
+        }
+
+        inFlightRequest.targets.put(view, request);
+        targets.put(view, inFlightRequest);
+    }
+
+    /**
+     * Cancels the requests for the provided source, at any size, detaching every view waiting for
+     * them.
+     *
+     * @param id String source of the requests.
+     */
+    public synchronized void cancel(String id) {
+        final Iterator<InFlightRequest> iterator = requests.values().iterator();
 
-                    tasks.remove(request.getSource());
-                });
+        while (iterator.hasNext()) {
+            final InFlightRequest inFlightRequest = iterator.next();
+
+            if (!inFlightRequest.source.equals(id)) {
+                continue;
             }
 
+            iterator.remove();
+            inFlightRequest.cancelled = true;
+            inFlightRequest.task.cancel(true);
+
+            for (ImageView view : inFlightRequest.targets.keySet()) {
+                targets.remove(view);
+            }
+
+            inFlightRequest.targets.clear();
+        }
+    }
+
+    /**
+     * Detaches the provided view from the request it's waiting for. The request is cancelled only
+     * if no other view is waiting for it. The bitmap displayed by the view is cleared, so it can be
+     * pooled once it's out of the memory cache.
+     *
+     * @param view ImageView to detach.
+     */
+    public synchronized void cancel(ImageView view) {
+        detach(view);
+
+        final Bitmap bitmap = displayed.remove(view);
+
+        if (bitmap != null) {
+            view.setImageDrawable(null);
+            release(bitmap);
+        }
+    }
+
+    /**
+     * Returns a copy of the request with the size available to the image inside the view, from
+     * its laid out bounds or from its exact LayoutParams, or null if it's not known yet.
+     */
+    private static ImageRequest getSizedRequest(ImageView view, ImageRequest request) {
+        final int horizontalPadding = view.getPaddingLeft() + view.getPaddingRight();
+        final int verticalPadding = view.getPaddingTop() + view.getPaddingBottom();
+
+        int width = view.getWidth() - horizontalPadding;
+        int height = view.getHeight() - verticalPadding;
+
+        if (width <= 0 || height <= 0) {
+            final ViewGroup.LayoutParams params = view.getLayoutParams();
+
+            if (params != null && params.width > 0 && params.height > 0) {
+                width = params.width - horizontalPadding;
+                height = params.height - verticalPadding;
+            }
+        }
+
+        return width > 0 && height > 0 ? request.withTargetSize(width, height) : null;
+    }
+
+    /**
+     * Shows the placeholder and loads the request once the view has been laid out.
+     */
+    private void loadAfterLayout(ImageView view, ImageRequest request) {
+        detach(view);
+
+        view.setScaleType(request.getScaleType());
+        view.setImageResource(request.getPlaceHolder());
+        release(displayed.remove(view));
+
+        final ViewTreeObserver.OnPreDrawListener listener = new ViewTreeObserver.OnPreDrawListener() {
             @Override
-            public void onError(Throwable exception) {
-                tasks.remove(request.getSource());
+            public boolean onPreDraw() {
+                if (view.getWidth() > 0 && view.getHeight() > 0) {
+                    load(view, request);
+                }
+
+                return true;
             }
         };
 
-        final FutureTask<Void> worker = new FutureTask<>(getWorker(view, request, callback, cache));
+        layouts.put(view, listener);
+        view.getViewTreeObserver().addOnPreDrawListener(listener);
+    }
+
+    private void detach(ImageView view) {
+        final ViewTreeObserver.OnPreDrawListener listener = layouts.remove(view);
+
+        if (listener != null) {
+            view.getViewTreeObserver().removeOnPreDrawListener(listener);
+        }
+
+        final InFlightRequest inFlightRequest = targets.remove(view);
+
+        if (inFlightRequest == null) {
+            return;
+        }
+
+        inFlightRequest.targets.remove(view);
 
-        tasks.put(request.getSource(), worker);
-        executorService.submit(worker);
+        if (inFlightRequest.targets.isEmpty()) {
+            inFlightRequest.cancelled = true;
+            inFlightRequest.task.cancel(true);
+
+            if (requests.get(inFlightRequest.key) == inFlightRequest) {
+                requests.remove(inFlightRequest.key);
+            }
+        }
     }
 
-    public synchronized void cancel(String id) {
-        final FutureTask<Void> task = tasks.get(id);
+    /**
+     * Looks the image up in the caches, on the disk executor: a larger variant in memory, then the
+     * exact key and a larger variant on disk. Larger variants are scaled down to the required
+     * size. On a hit the bitmap is promoted to the memory cache and delivered, otherwise the
+     * worker is submitted to fetch it, or to decode the original image if the disk cache stores
+     * it. An unchecked exception completes the request without a bitmap, otherwise it would be
+     * kept by the Future of the task and the request would stay in flight forever.
+     */
+    private void lookupDisk(InFlightRequest inFlightRequest, ImageRequest request) {
+        try {
+            findOnDisk(inFlightRequest, request);
+        } catch (RuntimeException e) {
+            DatabindingLogger.log(DatabindingLogger.Level.ERROR,
+                    "Cannot look up image " + request.getSource() + ": " + e);
+            handler.post(() -> complete(inFlightRequest, null));
+        }
+    }
+
+    private void findOnDisk(InFlightRequest inFlightRequest, ImageRequest request) {
+        Bitmap bitmap;
+
+        // Retained while holding the lock, so it can't be pooled while it's scaled
+        synchronized (this) {
+            bitmap = cache.getLargerVariantFromMemory(request);
+            retain(bitmap);
+        }
 
-        if (task != null) {
-            task.cancel(true);
+        final boolean fromMemory = bitmap != null;
+        boolean variant = fromMemory;
+
+        if (bitmap == null) {
+            bitmap = cache.getFromDisk(request);
+        }
+
+        if (bitmap == null) {
+            bitmap = cache.getLargerVariantFromDisk(request);
+            variant = bitmap != null;
         }
 
-        tasks.remove(id);
+        if (bitmap != null) {
+            // Exact hits are delivered as decoded, only larger variants are scaled
+            final Bitmap scaled = variant && !request.hasTargetSize()
+                    ? ImageWorker.scaleDown(bitmap, request.getRequiredSize())
+                    : bitmap;
+
+            synchronized (this) {
+                retain(scaled);
+
+                if (fromMemory) {
+                    release(bitmap);
+                }
+            }
+
+            // A bitmap is never cached under two keys, or one eviction would pool it
+            if (!fromMemory || scaled != bitmap) {
+                cache.put(request, scaled, ImageCache.CachingStrategy.MEMORY);
+            }
+
+            handler.post(() -> complete(inFlightRequest, scaled));
+            return;
+        }
+
+        // Original images cached on disk are decoded at the size of the request by a worker
+        final Callable<Void> worker = cache.hasOriginal(request.getSource())
+                ? new ImageDiskCacheWorker(context, request, getCallback(inFlightRequest), cache)
+                : getWorker(request, getCallback(inFlightRequest), cache);
+
+        if (worker == null) {
+            handler.post(() -> complete(inFlightRequest, null));
+            return;
+        }
+
+        synchronized (this) {
+            if (!inFlightRequest.cancelled) {
+                inFlightRequest.task = executorService.submit(worker);
+            }
+        }
     }
 
-    private Callable<Void> getWorker(ImageView view,
-                                    ImageRequest request,
-                                    ImageCallback callback,
-                                    ImageCache cache) {
-        final String source = request.getSource();
+    private synchronized void complete(InFlightRequest inFlightRequest, Bitmap bitmap) {
+        if (requests.get(inFlightRequest.key) == inFlightRequest) {
+            requests.remove(inFlightRequest.key);
+        }
+
+        for (Map.Entry<ImageView, ImageRequest> target : inFlightRequest.targets.entrySet()) {
+            final ImageView view = target.getKey();
 
-        if (isUrl(source)) {
-            return new ImageUrlWorker(view, request, callback, cache);
+            if (targets.get(view) != inFlightRequest) {
+                continue;
+            }
+
+            targets.remove(view);
+
+            if (bitmap != null) {
+                show(view, bitmap);
+            } else {
+                view.setImageResource(target.getValue().getPlaceHolder());
+                release(displayed.remove(view));
+            }
         }
 
-        if (isFile(source)) {
-            return new ImageFileWorker(view, request, callback, cache);
+        inFlightRequest.targets.clear();
+
+        // Reference taken when the request succeeded
+        release(bitmap);
+    }
+
+    private void show(ImageView view, Bitmap bitmap) {
+        retain(bitmap);
+        view.setImageBitmap(bitmap);
+        release(displayed.put(view, bitmap));
+    }
+
+    private void retain(Bitmap bitmap) {
+        if (bitmap == null) {
+            return;
         }
 
-        if (isResource(source)) {
-            return new ImageResourceWorker(view, request, callback, cache);
+        final Integer count = references.get(bitmap);
+
+        references.put(bitmap, count != null ? count + 1 : 1);
+    }
+
+    private void release(Bitmap bitmap) {
+        if (bitmap == null) {
+            return;
         }
 
-        return null;
+        final Integer count = references.get(bitmap);
+
+        if (count != null && count > 1) {
+            references.put(bitmap, count - 1);
+            return;
+        }
+
+        references.remove(bitmap);
+
+        if (removed.remove(bitmap)) {
+            cache.getBitmapPool().put(bitmap);
+        }
     }
 
-    private static boolean isUrl(String source) {
-        return Patterns.WEB_URL.matcher(source).matches();
+    private synchronized void onBitmapRemoved(Bitmap bitmap) {
+        if (references.containsKey(bitmap)) {
+            removed.add(bitmap);
+        } else {
+            cache.getBitmapPool().put(bitmap);
+        }
     }
 
-    private static boolean isFile(String source) {
-        final File file = new File(source);
+    private ImageCallback getCallback(InFlightRequest inFlightRequest) {
+        return new ImageCallback() {
+            @Override
+            public void onSuccess(Bitmap bitmap, ImageRequest request) {
+                synchronized (ImageLoader.this) {
+                    // Released by complete
+                    retain(bitmap);
+                    // Released by onCached, so it isn't pooled while it's written to disk
+                    retain(bitmap);
+                }
 
-        return file.exists();
+                handler.post(() -> complete(inFlightRequest, bitmap));
+            }
+
+            @Override
+            public void onCached(Bitmap bitmap) {
+                synchronized (ImageLoader.this) {
+                    release(bitmap);
+                }
+            }
+
+            @Override
+            public void onError(Throwable exception) {
+                handler.post(() -> complete(inFlightRequest, null));
+            }
+        };
     }
 
-    private static boolean isResource(String source) {
-        return Utils.isInteger(source);
+    private static String getKey(ImageRequest request) {
+        return request.getCacheKey();
+    }
+
+    private Callable<Void> getWorker(ImageRequest request,
+                                    ImageCallback callback,
+                                    ImageCache cache) {
+        ImageRequest.SourceType sourceType = request.getSourceType();
+
+        if (sourceType == null || sourceType == ImageRequest.SourceType.UNKNOWN) {
+            sourceType = getSourceType(request.getSource());
+        }
+
+        switch (sourceType) {
+            case URL:
+                return new ImageUrlWorker(context, request, callback, cache);
+            case FILE:
+                return new ImageFileWorker(context, request, callback, cache);
+            case RESOURCE:
+                return new ImageResourceWorker(context, request, callback, cache);
+            case CONTENT_URI:
+                return new ImageContentUriWorker(context, request, callback, cache);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Classifies a source of unknown type by its scheme, without regular expressions. It's called
+     * from the disk executor, so the file system check never runs on the main thread.
+     *
+     * @param source String source of the image.
+     * @return SourceType of the source, UNKNOWN if it can't be loaded.
+     */
+    private static ImageRequest.SourceType getSourceType(String source) {
+        if (source.startsWith("http://") || source.startsWith("https://")) {
+            return ImageRequest.SourceType.URL;
+        }
+
+        if (source.startsWith("content://")) {
+            return ImageRequest.SourceType.CONTENT_URI;
+        }
+
+        if (Utils.isInteger(source)) {
+            return ImageRequest.SourceType.RESOURCE;
+        }
+
+        if (new File(source).exists()) {
+            return ImageRequest.SourceType.FILE;
+        }
+
+        return ImageRequest.SourceType.UNKNOWN;
     }
 
+    /**
+     * Clears the memory cache right away, and the disk cache on the disk executor, after the disk
+     * lookups already queued.
+     */
     @SuppressWarnings("unused")
     public void clearCache() {
-        cache.clear();
+        cache.clearMemory();
+        diskExecutorService.submit(cache::clearDisk);
     }
 
 }
@@ -1,24 +1,110 @@
 package com.uidroid.uidroid.loader;
 
+import android.graphics.Bitmap;
 import android.widget.ImageView;
 
 import com.uidroid.uidroid.R;
 
 public class ImageRequest {
 
+    /**
+     * Kind of the source, which selects the worker loading it. UNKNOWN sources are classified on a
+     * background thread when they are loaded.
+     */
+    public enum SourceType {
+        URL,
+        FILE,
+        RESOURCE,
+        CONTENT_URI,
+        UNKNOWN
+    }
+
+    /**
+     * How the decoded size is chosen. REQUIRED_SIZE samples the image down by powers of two while
+     * both sides stay above the required size. VIEW_BOUNDS waits for the ImageView to be laid out,
+     * or reads its exact LayoutParams, and decodes to exactly the size the scale type displays, so
+     * it fits views with fixed or match_parent bounds.
+     */
+    public enum SizingMode {
+        REQUIRED_SIZE,
+        VIEW_BOUNDS
+    }
+
     private int viewCode;
 
     private final String source;
+    private final SourceType sourceType;
 
     private final ImageView.ScaleType scaleType;
     private final int placeHolder;
     private final int requiredSize;
+    private final Bitmap.Config config;
+    private final IImageTransformation transformation;
+    private final SizingMode sizingMode;
+    private final int targetWidth;
+    private final int targetHeight;
+
+    private final String variantKey;
+    private final String cacheKey;
 
     public ImageRequest(String source, ImageView.ScaleType scaleType, int placeHolder, int requiredSize) {
+        this(source, SourceType.UNKNOWN, scaleType, placeHolder, requiredSize);
+    }
+
+    public ImageRequest(String source, SourceType sourceType, ImageView.ScaleType scaleType, int placeHolder, int requiredSize) {
+        this(source, sourceType, scaleType, placeHolder, requiredSize, Bitmap.Config.ARGB_8888, null);
+    }
+
+    public ImageRequest(String source,
+                        SourceType sourceType,
+                        ImageView.ScaleType scaleType,
+                        int placeHolder,
+                        int requiredSize,
+                        Bitmap.Config config,
+                        IImageTransformation transformation) {
+        this(source, sourceType, scaleType, placeHolder, requiredSize, config, transformation,
+                SizingMode.REQUIRED_SIZE, 0, 0);
+    }
+
+    public ImageRequest(String source,
+                        SourceType sourceType,
+                        ImageView.ScaleType scaleType,
+                        int placeHolder,
+                        int requiredSize,
+                        Bitmap.Config config,
+                        IImageTransformation transformation,
+                        SizingMode sizingMode,
+                        int targetWidth,
+                        int targetHeight) {
         this.source = source;
+        this.sourceType = sourceType;
         this.scaleType = scaleType;
         this.placeHolder = placeHolder;
         this.requiredSize = requiredSize;
+        this.config = config;
+        this.transformation = transformation;
+        this.sizingMode = sizingMode;
+        this.targetWidth = targetWidth;
+        this.targetHeight = targetHeight;
+        this.variantKey = config + ":" + (transformation != null ? transformation.getKey() : "") + ":" + source;
+        this.cacheKey = hasTargetSize()
+                ? targetWidth + "x" + targetHeight + ":" + scaleType + ":" + variantKey
+                : requiredSize + ":" + variantKey;
+    }
+
+    /**
+     * Returns a copy of this request decoding to the provided size, measured from the ImageView.
+     *
+     * @param width int width available to the image.
+     * @param height int height available to the image.
+     * @return ImageRequest with target size.
+     */
+    public ImageRequest withTargetSize(int width, int height) {
+        final ImageRequest request = new ImageRequest(source, sourceType, scaleType, placeHolder,
+                requiredSize, config, transformation, sizingMode, width, height);
+        request.setViewCode(viewCode);
+
+        return request;
     }
 
     public ImageView.ScaleType getScaleType() {
@@ -29,6 +115,10 @@ public class ImageRequest {
         return source;
     }
 
+    public SourceType getSourceType() {
+        return sourceType;
+    }
+
     public int getPlaceHolder() {
         return placeHolder;
     }
@@ -37,6 +127,50 @@ public class ImageRequest {
         return requiredSize;
     }
 
+    public Bitmap.Config getConfig() {
+        return config;
+    }
+
+    public IImageTransformation getTransformation() {
+        return transformation;
+    }
+
+    public SizingMode getSizingMode() {
+        return sizingMode;
+    }
+
+    public int getTargetWidth() {
+        return targetWidth;
+    }
+
+    public int getTargetHeight() {
+        return targetHeight;
+    }
+
+    public boolean hasTargetSize() {
+        return targetWidth > 0 && targetHeight > 0;
+    }
+
+    /**
+     * Returns the key of the decoded bitmap in the caches, made of the required size (or the
+     * target size and scale type), the bitmap config, the transformation key and the source. The
+     * size comes first, so it's never cut off by the disk cache key formatting.
+     *
+     * @return String cache key.
+     */
+    public String getCacheKey() {
+        return cacheKey;
+    }
+
+    /**
+     * Returns the cache key without the required size, shared by all the sizes of this image.
+     *
+     * @return String variant key.
+     */
+    public String getVariantKey() {
+        return variantKey;
+    }
+
     public int getViewCode() {
         return viewCode;
     }
@@ -48,16 +182,25 @@ public class ImageRequest {
     public static class Builder {
 
         private String source;
+        private SourceType sourceType = SourceType.UNKNOWN;
 
         public ImageView.ScaleType scaleType = ImageView.ScaleType.CENTER_CROP;
         public int placeHolder = R.drawable.stub;
         public int requiredSize = 300;
+        public Bitmap.Config config = Bitmap.Config.ARGB_8888;
+        public IImageTransformation transformation;
+        public SizingMode sizingMode = SizingMode.REQUIRED_SIZE;
 
         public Builder source(String source) {
             this.source = source;
             return this;
         }
 
+        public Builder sourceType(SourceType sourceType) {
+            this.sourceType = sourceType;
+            return this;
+        }
+
         public Builder scaleType(ImageView.ScaleType scaleType) {
             this.scaleType = scaleType;
             return this;
@@ -73,8 +216,24 @@ public class ImageRequest {
             return this;
         }
 
+        public Builder config(Bitmap.Config config) {
+            this.config = config;
+            return this;
+        }
+
+        public Builder transformation(IImageTransformation transformation) {
+            this.transformation = transformation;
+            return this;
+        }
+
+        public Builder sizingMode(SizingMode sizingMode) {
+            this.sizingMode = sizingMode;
+            return this;
+        }
+
         public ImageRequest build() {
-            return new ImageRequest(source, scaleType, placeHolder, requiredSize);
+            return new ImageRequest(source, sourceType, scaleType, placeHolder, requiredSize, config,
+                    transformation, sizingMode, 0, 0);
         }
     }
 
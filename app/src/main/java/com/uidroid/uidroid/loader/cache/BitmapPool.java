@@ -0,0 +1,126 @@
+package com.uidroid.uidroid.loader.cache;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Pool of mutable bitmaps which are no longer displayed nor cached, bucketed by allocation size.
+ * Decoders reuse them through BitmapFactory.Options.inBitmap, so scrolling through images
+ * recycles the same pixel buffers instead of allocating new ones for the garbage collector.
+ */
+public class BitmapPool {
+
+    // A pooled bitmap is reused only if it's at most this many times larger than needed
+    private static final int MAX_SIZE_MULTIPLE = 4;
+
+    private final TreeMap<Integer, Deque<Bitmap>> buckets = new TreeMap<>();
+    private final long limit;
+    private long size = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+
+    public BitmapPool(long limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Adds a bitmap to the pool. Immutable or recycled bitmaps, and bitmaps which would exceed the
+     * pool limit, are ignored.
+     *
+     * @param bitmap Bitmap no longer referenced by any view or cache.
+     */
+    public synchronized void put(Bitmap bitmap) {
+        if (bitmap == null || !bitmap.isMutable() || bitmap.isRecycled()) {
+            return;
+        }
+
+        final int byteCount = bitmap.getAllocationByteCount();
+
+        if (size + byteCount > limit) {
+            return;
+        }
+
+        Deque<Bitmap> bucket = buckets.get(byteCount);
+
+        if (bucket == null) {
+            bucket = new ArrayDeque<>();
+            buckets.put(byteCount, bucket);
+        }
+
+        bucket.push(bitmap);
+        size += byteCount;
+    }
+
+    /**
+     * Removes and returns a pooled bitmap large enough to decode an image of the provided size and
+     * config into, or null if there's none.
+     *
+     * @param width int width of the decoded image.
+     * @param height int height of the decoded image.
+     * @param config Bitmap.Config of the decoded image.
+     * @return Bitmap to use as inBitmap, or null.
+     */
+    public synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        final long required = (long) width * height * getBytesPerPixel(config);
+        final Map.Entry<Integer, Deque<Bitmap>> entry = required <= Integer.MAX_VALUE
+                ? buckets.ceilingEntry((int) required)
+                : null;
+
+        if (entry == null || entry.getKey() > required * MAX_SIZE_MULTIPLE) {
+            misses++;
+            return null;
+        }
+
+        final Bitmap bitmap = entry.getValue().pop();
+
+        if (entry.getValue().isEmpty()) {
+            buckets.remove(entry.getKey());
+        }
+
+        size -= entry.getKey();
+        hits++;
+
+        return bitmap;
+    }
+
+    public synchronized void clear() {
+        buckets.clear();
+        size = 0;
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    private static int getBytesPerPixel(Bitmap.Config config) {
+        if (config == null) {
+            return 4;
+        }
+
+        switch (config) {
+            case ALPHA_8:
+                return 1;
+            case RGB_565:
+            case ARGB_4444:
+                return 2;
+            case RGBA_F16:
+                return 8;
+            default:
+                return 4;
+        }
+    }
+
+}
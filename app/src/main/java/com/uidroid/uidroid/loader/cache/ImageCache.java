@@ -3,16 +3,45 @@ package com.uidroid.uidroid.loader.cache;
 import android.content.Context;
 import android.graphics.Bitmap;
 
+import com.uidroid.uidroid.DatabindingLogger;
+import com.uidroid.uidroid.loader.ImageRequest;
+import com.uidroid.uidroid.loader.cache.disklrucache.DiskLruCache;
 import com.uidroid.uidroid.loader.cache.disklrucache.DiskLruImageCache;
-import com.uidroid.uidroid.loader.cache.memorycache.MemoryImageCache;
+import com.uidroid.uidroid.loader.cache.memorycache.IBitmapRemovedListener;
+import com.uidroid.uidroid.loader.cache.memorycache.SegmentedMemoryImageCache;
+import com.uidroid.uidroid.loader.worker.ImageWorker;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
 
 public class ImageCache {
 
     private static final String IMAGE_CACHE_NAME = "IImageCache";
+    private static final String ORIGINAL_IMAGE_CACHE_NAME = "IImageCacheOriginal";
     private static final int DISK_CACHE_SIZE = 1024 * 1024 * 250; // 250 mb
+    private static final int MAX_VARIANT_KEYS = 512;
 
-    private final IImageCache diskLruImageCache;
+    private final DiskLruImageCache diskLruImageCache;
     private final IImageCache memoryImageCache;
+    private final DiskMode diskMode;
+    private final int thumbnailSize;
+    private final BitmapPool bitmapPool = new BitmapPool(Runtime.getRuntime().maxMemory() / 8);
+
+    // Required sizes cached for each variant key, to find a larger variant of a missing size. It's
+    // an index of this session only: it's bounded to the most recently used keys, sizes found
+    // neither in memory nor on disk are dropped, and the sizes cached on disk by a previous
+    // session are not known, so those variants are only found at their exact size
+    private final Map<String, NavigableSet<Integer>> variants = Collections.synchronizedMap(
+            new LinkedHashMap<String, NavigableSet<Integer>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, NavigableSet<Integer>> eldest) {
+                    return size() > MAX_VARIANT_KEYS;
+                }
+            });
 
     public enum CachingStrategy {
         ALL,
@@ -21,32 +50,333 @@ public class ImageCache {
         NONE
     }
 
+    /**
+     * What the disk cache stores. DECODED stores every decoded bitmap re-encoded as JPEG, under
+     * its cache key. ORIGINAL stores the bytes of each downloaded image as they were received,
+     * under its source, so a disk hit is decoded at any size without recompression, plus an
+     * optional thumbnail decoded to the thumbnail size, read instead of the original by the
+     * requests not larger than it.
+     */
+    public enum DiskMode {
+        DECODED,
+        ORIGINAL
+    }
+
     public ImageCache(Context context) {
-        memoryImageCache = new MemoryImageCache();
-        diskLruImageCache = new DiskLruImageCache(context, IMAGE_CACHE_NAME, DISK_CACHE_SIZE);
+        this(context, new SegmentedMemoryImageCache());
+    }
+
+    /**
+     * Creates the cache with the provided memory cache, for example a SegmentedMemoryImageCache
+     * with a custom limit and number of segments, or the single lock MemoryImageCache.
+     *
+     * @param context Context used to locate the disk cache directory.
+     * @param memoryImageCache IImageCache used as memory cache.
+     */
+    public ImageCache(Context context, IImageCache memoryImageCache) {
+        this(context, memoryImageCache, DiskMode.DECODED, 0);
+    }
+
+    /**
+     * Creates the cache with the provided memory cache and disk mode. Both modes use their own
+     * directory, so switching mode never reads the entries of the other one. The disk cache is
+     * opened by the first background thread using it, so creating the cache at startup, on the
+     * main thread, doesn't read its journal.
+     *
+     * @param context Context used to locate the disk cache directory.
+     * @param memoryImageCache IImageCache used as memory cache.
+     * @param diskMode DiskMode of the disk cache.
+     * @param thumbnailSize int required size of the thumbnails stored next to the original
+     *                      images, or 0 to store no thumbnail. Ignored in DECODED mode.
+     */
+    public ImageCache(Context context, IImageCache memoryImageCache, DiskMode diskMode, int thumbnailSize) {
+        this.memoryImageCache = memoryImageCache;
+        this.diskMode = diskMode;
+        this.thumbnailSize = diskMode == DiskMode.ORIGINAL ? thumbnailSize : 0;
+
+        if (diskMode == DiskMode.ORIGINAL) {
+            diskLruImageCache = new DiskLruImageCache(context, ORIGINAL_IMAGE_CACHE_NAME, DISK_CACHE_SIZE, 2);
+        } else {
+            diskLruImageCache = new DiskLruImageCache(context, IMAGE_CACHE_NAME, DISK_CACHE_SIZE);
+        }
+    }
+
+    /**
+     * Enables or disables the in memory index of the sources of the hashed disk cache keys, to
+     * find which image an entry of the cache directory holds while debugging.
+     *
+     * @param enabled boolean true to record the sources of the keys.
+     */
+    public void setDiskKeyIndexEnabled(boolean enabled) {
+        diskLruImageCache.setKeyIndexEnabled(enabled);
+    }
+
+    /**
+     * Returns the source of a disk cache key, if the key index is enabled and has recorded it.
+     *
+     * @param diskKey String hashed key, as named in the cache directory.
+     * @return String source or null.
+     */
+    public String getDiskKeySource(String diskKey) {
+        return diskLruImageCache.getSource(diskKey);
+    }
+
+    public DiskMode getDiskMode() {
+        return diskMode;
+    }
+
+    public int getThumbnailSize() {
+        return thumbnailSize;
+    }
+
+    public BitmapPool getBitmapPool() {
+        return bitmapPool;
+    }
+
+    /**
+     * Sets the listener notified of the bitmaps leaving the memory cache. Only a
+     * SegmentedMemoryImageCache reports them, other memory caches ignore the listener.
+     *
+     * @param listener IBitmapRemovedListener or null.
+     */
+    public void setBitmapRemovedListener(IBitmapRemovedListener listener) {
+        if (memoryImageCache instanceof SegmentedMemoryImageCache) {
+            ((SegmentedMemoryImageCache) memoryImageCache).setBitmapRemovedListener(listener);
+        }
     }
 
     public Bitmap get(String s) {
-        return memoryImageCache.get(s) != null ? memoryImageCache.get(s) : diskLruImageCache.get(s);
+        final Bitmap bitmap = getFromMemory(s);
+
+        return bitmap != null ? bitmap : getFromDisk(s);
+    }
+
+    /**
+     * Returns the bitmap from the memory cache only. It never touches the file system, so it's
+     * safe to call from the main thread.
+     *
+     * @param s String key.
+     * @return Bitmap or null.
+     */
+    public Bitmap getFromMemory(String s) {
+        return memoryImageCache.get(s);
+    }
+
+    /**
+     * Returns the bitmap from the disk cache only, reading and decoding its file. It must be called
+     * from a background thread.
+     *
+     * @param s String key.
+     * @return Bitmap or null.
+     */
+    public Bitmap getFromDisk(String s) {
+        if (diskMode != DiskMode.DECODED) {
+            return null;
+        }
+
+        return diskLruImageCache.get(s);
+    }
+
+    /**
+     * Returns the bitmap cached for the exact key of the request from the memory cache only.
+     *
+     * @param request ImageRequest to look up.
+     * @return Bitmap or null.
+     */
+    public Bitmap getFromMemory(ImageRequest request) {
+        return getFromMemory(request.getCacheKey());
+    }
+
+    /**
+     * Returns the bitmap cached for the exact key of the request from the disk cache only. It must
+     * be called from a background thread.
+     *
+     * @param request ImageRequest to look up.
+     * @return Bitmap or null.
+     */
+    public Bitmap getFromDisk(ImageRequest request) {
+        return getFromDisk(request.getCacheKey());
+    }
+
+    /**
+     * Returns the smallest bitmap cached in memory for a larger size of the same source, config
+     * and transformation of the request, to be scaled down instead of fetching the source again.
+     *
+     * @param request ImageRequest to look up.
+     * @return Bitmap larger than required, or null.
+     */
+    public Bitmap getLargerVariantFromMemory(ImageRequest request) {
+        return getLargerVariant(request, memoryImageCache, false);
+    }
+
+    /**
+     * Same as getLargerVariantFromMemory, but from the disk cache. It must be called from a
+     * background thread.
+     *
+     * @param request ImageRequest to look up.
+     * @return Bitmap larger than required, or null.
+     */
+    public Bitmap getLargerVariantFromDisk(ImageRequest request) {
+        if (diskMode != DiskMode.DECODED) {
+            return null;
+        }
+
+        return getLargerVariant(request, diskLruImageCache, true);
+    }
+
+    /**
+     * Returns an editor for the original image of the provided source, to write the downloaded
+     * bytes to ORIGINAL_INDEX while they're decoded, or null if the disk cache doesn't store
+     * original images or the source is already being written.
+     *
+     * @param source String source of the image.
+     * @return DiskLruCache.Editor or null.
+     */
+    public DiskLruCache.Editor editOriginal(String source) {
+        if (diskMode != DiskMode.ORIGINAL) {
+            return null;
+        }
+
+        return diskLruImageCache.edit(source);
+    }
+
+    /**
+     * Completes the edit of an original image, once all its bytes have been written: the
+     * thumbnail is scaled down from the bitmap decoded for the request, if it was decoded for the
+     * required size and at least as large as the thumbnail size, and the entry is committed.
+     *
+     * @param editor DiskLruCache.Editor returned by editOriginal.
+     * @param request ImageRequest the bitmap was decoded for.
+     * @param bitmap Bitmap decoded from the original, before any transformation.
+     * @throws IOException if the entry can't be committed.
+     */
+    public void commitOriginal(DiskLruCache.Editor editor, ImageRequest request, Bitmap bitmap) throws IOException {
+        Bitmap thumbnail = null;
+
+        if (thumbnailSize > 0 && !request.hasTargetSize() && request.getRequiredSize() >= thumbnailSize) {
+            thumbnail = ImageWorker.scaleDown(bitmap, thumbnailSize);
+        }
+
+        final boolean written = diskLruImageCache.writeThumbnail(editor, DiskLruImageCache.THUMBNAIL_INDEX, thumbnail);
+
+        if (thumbnail != null && thumbnail != bitmap) {
+            bitmapPool.put(thumbnail);
+        }
+
+        try {
+            if (written) {
+                editor.commit();
+            } else {
+                editor.abort();
+            }
+        } catch (IllegalStateException e) {
+            // The disk cache was cleared meanwhile, the bitmap is still delivered
+            DatabindingLogger.log(DatabindingLogger.Level.ERROR, "Cannot write disk cache");
+        }
+    }
+
+    /**
+     * Returns a snapshot of the original image of the provided source, and of its thumbnail, or
+     * null if it's not cached. The caller must close it. It must be called from a background
+     * thread.
+     *
+     * @param source String source of the image.
+     * @return DiskLruCache.Snapshot or null.
+     */
+    public DiskLruCache.Snapshot getOriginal(String source) {
+        if (diskMode != DiskMode.ORIGINAL) {
+            return null;
+        }
+
+        return diskLruImageCache.getSnapshot(source);
+    }
+
+    /**
+     * Returns whether the original image of the provided source is cached. It must be called
+     * from a background thread.
+     *
+     * @param source String source of the image.
+     * @return true if the original is cached.
+     */
+    public boolean hasOriginal(String source) {
+        try (DiskLruCache.Snapshot snapshot = getOriginal(source)) {
+            return snapshot != null;
+        }
+    }
+
+    /**
+     * Returns the smallest variant larger than the request found in the provided cache. If prune
+     * is true, the sizes found neither in that cache nor in memory are removed from the index.
+     */
+    private Bitmap getLargerVariant(ImageRequest request, IImageCache imageCache, boolean prune) {
+        // Exact sizes depend on the view and scale type, only required sizes are interchangeable
+        if (request.hasTargetSize()) {
+            return null;
+        }
+
+        final NavigableSet<Integer> sizes = variants.get(request.getVariantKey());
+
+        if (sizes == null) {
+            return null;
+        }
+
+        for (Integer size : sizes.tailSet(request.getRequiredSize(), false)) {
+            final String key = size + ":" + request.getVariantKey();
+            final Bitmap bitmap = imageCache.get(key);
+
+            if (bitmap != null) {
+                return bitmap;
+            }
+
+            if (prune && !memoryImageCache.contains(key)) {
+                sizes.remove(size);
+            }
+        }
+
+        if (prune && sizes.isEmpty()) {
+            variants.remove(request.getVariantKey(), sizes);
+        }
+
+        return null;
+    }
+
+    public void put(ImageRequest request, Bitmap data, CachingStrategy cachingStrategy) {
+        put(request.getCacheKey(), data, cachingStrategy);
+
+        if (cachingStrategy != CachingStrategy.NONE && !request.hasTargetSize()) {
+            NavigableSet<Integer> sizes;
+
+            synchronized (variants) {
+                sizes = variants.get(request.getVariantKey());
+
+                if (sizes == null) {
+                    sizes = new ConcurrentSkipListSet<>();
+                    variants.put(request.getVariantKey(), sizes);
+                }
+            }
+
+            sizes.add(request.getRequiredSize());
+        }
     }
 
     public void put(String s, Bitmap data, CachingStrategy cachingStrategy) {
         switch (cachingStrategy) {
             case ALL:
-                if (memoryImageCache.get(s) == null) {
+                if (!memoryImageCache.contains(s)) {
                     memoryImageCache.put(s, data);
                 }
-                if (diskLruImageCache.get(s) == null) {
+                // Original images are written by the workers while they're fetched
+                if (diskMode == DiskMode.DECODED && !diskLruImageCache.contains(s)) {
                     diskLruImageCache.put(s, data);
                 }
                 break;
             case DISK:
-                if (diskLruImageCache.get(s) == null) {
+                if (diskMode == DiskMode.DECODED && !diskLruImageCache.contains(s)) {
                     diskLruImageCache.put(s, data);
                 }
                 break;
             case MEMORY:
-                if (memoryImageCache.get(s) == null) {
+                if (!memoryImageCache.contains(s)) {
                     memoryImageCache.put(s, data);
                 }
                 break;
@@ -56,7 +386,21 @@ public class ImageCache {
     }
 
     public void clear() {
+        clearMemory();
+        clearDisk();
+    }
+
+    public void clearMemory() {
+        variants.clear();
         memoryImageCache.clear();
+        bitmapPool.clear();
+    }
+
+    /**
+     * Deletes the disk cache, opening it first if it's not open yet. It must be called from a
+     * background thread.
+     */
+    public void clearDisk() {
         diskLruImageCache.clear();
     }
 
@@ -1,6 +1,6 @@
 package com.uidroid.uidroid.loader.cache.disklrucache;
 
-import java.io.BufferedWriter;
+import java.io.BufferedOutputStream;
 import java.io.Closeable;
 import java.io.EOFException;
 import java.io.File;
@@ -13,15 +13,25 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
 import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -74,6 +84,9 @@ public final class DiskLruCache implements Closeable {
   static final String JOURNAL_FILE = "journal";
   static final String JOURNAL_FILE_TEMP = "journal.tmp";
   static final String JOURNAL_FILE_BACKUP = "journal.bkp";
+  static final String BINARY_JOURNAL_FILE = "journal.bin";
+  static final String BINARY_JOURNAL_FILE_TEMP = "journal.bin.tmp";
+  static final String BINARY_JOURNAL_FILE_BACKUP = "journal.bin.bkp";
   static final String MAGIC = "libcore.io.DiskLruCache";
   static final String VERSION_1 = "1";
   static final long ANY_SEQUENCE_NUMBER = -1;
@@ -84,19 +97,94 @@ public final class DiskLruCache implements Closeable {
   private static final String REMOVE = "REMOVE";
   private static final String READ = "READ";
 
+  /**
+   * The binary journal starts with the magic, the format version, the app
+   * version and the value count, as big endian ints. Each record is then an
+   * opcode byte, the key length byte and the ASCII key, followed for CLEAN
+   * records by the value lengths as big endian longs.
+   */
+  static final int BINARY_MAGIC = 0x444c5243;
+  static final int BINARY_VERSION_1 = 1;
+  private static final int BINARY_HEADER_LENGTH = 16;
+  private static final byte BINARY_CLEAN = 1;
+  private static final byte BINARY_DIRTY = 2;
+  private static final byte BINARY_REMOVE = 3;
+  private static final byte BINARY_READ = 4;
+
+  /**
+   * Format of the journal. TEXT is the line based journal. BINARY is a
+   * compact journal read through a memory mapped buffer, so opening a cache
+   * with many entries doesn't parse text lines. A TEXT journal found when
+   * opening a BINARY cache is read once, then compacted to the BINARY format
+   * in the background.
+   */
+  public enum JournalFormat {
+    TEXT,
+    BINARY
+  }
+
   private final File directory;
   private final File journalFile;
   private final File journalFileTmp;
   private final File journalFileBackup;
+  private final File binaryJournalFile;
+  private final File binaryJournalFileTmp;
+  private final File binaryJournalFileBackup;
+  private final JournalFormat journalFormat;
+  /** True if the journal writer appends binary records. */
+  private boolean binaryJournal;
+  /** True if the journal is a TEXT journal to compact to the BINARY format. */
+  private boolean migrationPending;
   private final int appVersion;
   private long maxSize;
   private final int valueCount;
-  private long size = 0;
-  private Writer journalWriter;
+  private volatile long size = 0;
+  private volatile OutputStream journalWriter;
   private final LinkedHashMap<String, Entry> lruEntries =
           new LinkedHashMap<String, Entry>(0, 0.75f, true);
   private int redundantOpCount;
 
+  /**
+   * Reads don't take the cache lock: they look entries up in this map, which
+   * mirrors {@code lruEntries}, and open the clean files of an entry while no
+   * edit of it is being committed. Their LRU promotion and READ records are
+   * buffered, then applied under the lock by the next structural operation or
+   * by the cleanup thread once enough reads are buffered.
+   */
+  private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+  private final ConcurrentLinkedQueue<Entry> readBuffer = new ConcurrentLinkedQueue<Entry>();
+  private final AtomicInteger readBufferSize = new AtomicInteger();
+  private static final int READ_BUFFER_DRAIN_THRESHOLD = 64;
+
+  /**
+   * With group commit, journal records are buffered and flushed together by
+   * a background writer, at most {@code groupCommitIntervalMillis} after the
+   * first buffered record or as soon as {@code groupCommitBatchSize} records
+   * are buffered. A crash may lose the tail of the journal, so the files are
+   * reconciled with it when the cache is opened.
+   */
+  private final long groupCommitIntervalMillis;
+  private final int groupCommitBatchSize;
+  private int pendingRecords;
+  private boolean journalFlushScheduled;
+  private ScheduledThreadPoolExecutor journalFlusher;
+  private final Runnable journalFlush = new Runnable() {
+    public void run() {
+      synchronized (DiskLruCache.this) {
+        journalFlushScheduled = false;
+        if (journalWriter == null || pendingRecords == 0) {
+          return; // Closed or already flushed.
+        }
+        try {
+          journalWriter.flush();
+          pendingRecords = 0;
+        } catch (IOException ignored) {
+          // Retried with the next records.
+        }
+      }
+    }
+  };
+
   /**
    * To differentiate between old and current snapshots, each entry is given
    * a sequence number each time an edit is committed. A snapshot is stale if
@@ -113,8 +201,9 @@ public final class DiskLruCache implements Closeable {
         if (journalWriter == null) {
           return null; // Closed.
         }
+        drainReadBuffer();
         trimToSize();
-        if (journalRebuildRequired()) {
+        if (migrationPending || journalRebuildRequired()) {
           rebuildJournal();
           redundantOpCount = 0;
         }
@@ -123,14 +212,26 @@ public final class DiskLruCache implements Closeable {
     }
   };
 
-  private DiskLruCache(File directory, int appVersion, int valueCount, long maxSize) {
+  private DiskLruCache(File directory, int appVersion, int valueCount, long maxSize,
+          long groupCommitIntervalMillis, int groupCommitBatchSize, JournalFormat journalFormat) {
     this.directory = directory;
     this.appVersion = appVersion;
     this.journalFile = new File(directory, JOURNAL_FILE);
     this.journalFileTmp = new File(directory, JOURNAL_FILE_TEMP);
     this.journalFileBackup = new File(directory, JOURNAL_FILE_BACKUP);
+    this.binaryJournalFile = new File(directory, BINARY_JOURNAL_FILE);
+    this.binaryJournalFileTmp = new File(directory, BINARY_JOURNAL_FILE_TEMP);
+    this.binaryJournalFileBackup = new File(directory, BINARY_JOURNAL_FILE_BACKUP);
+    this.journalFormat = journalFormat;
     this.valueCount = valueCount;
     this.maxSize = maxSize;
+    this.groupCommitIntervalMillis = groupCommitIntervalMillis;
+    this.groupCommitBatchSize = groupCommitBatchSize;
+    if (isGroupCommit()) {
+      journalFlusher = new ScheduledThreadPoolExecutor(1);
+      journalFlusher.setKeepAliveTime(60L, TimeUnit.SECONDS);
+      journalFlusher.allowCoreThreadTimeOut(true);
+    }
   }
 
   /**
@@ -144,6 +245,40 @@ public final class DiskLruCache implements Closeable {
    */
   public static DiskLruCache open(File directory, int appVersion, int valueCount, long maxSize)
           throws IOException {
+    return open(directory, appVersion, valueCount, maxSize, 0, 0);
+  }
+
+  /**
+   * Opens the cache in {@code directory} with group commit: journal records
+   * are buffered and flushed by a background writer instead of on every
+   * edit. A crash may then lose the most recent records, which only costs
+   * LRU ordering and the edits in progress: on open, lengths are read back
+   * from the files, entries whose files are missing or being edited are
+   * dropped, and files that no entry owns are adopted as an entry if every
+   * value is present, or deleted otherwise.
+   *
+   * @param groupCommitIntervalMillis the maximum delay before buffered
+   *     records are flushed, or 0 to flush on every edit.
+   * @param groupCommitBatchSize the number of buffered records flushed
+   *     without waiting for the delay.
+   */
+  public static DiskLruCache open(File directory, int appVersion, int valueCount, long maxSize,
+          long groupCommitIntervalMillis, int groupCommitBatchSize) throws IOException {
+    return open(directory, appVersion, valueCount, maxSize, groupCommitIntervalMillis,
+            groupCommitBatchSize, JournalFormat.TEXT);
+  }
+
+  /**
+   * Opens the cache in {@code directory} with the provided journal format.
+   * An existing TEXT journal is migrated to the BINARY format: it's read as
+   * usual, then rewritten as a BINARY journal by the cleanup thread, which
+   * deletes it once the BINARY journal is in place.
+   *
+   * @param journalFormat the format of the journal.
+   */
+  public static DiskLruCache open(File directory, int appVersion, int valueCount, long maxSize,
+          long groupCommitIntervalMillis, int groupCommitBatchSize, JournalFormat journalFormat)
+          throws IOException {
     if (maxSize <= 0) {
       throw new IllegalArgumentException("maxSize <= 0");
     }
@@ -152,24 +287,34 @@ public final class DiskLruCache implements Closeable {
     }
 
     // If a bkp file exists, use it instead.
-    File backupFile = new File(directory, JOURNAL_FILE_BACKUP);
-    if (backupFile.exists()) {
-      File journalFile = new File(directory, JOURNAL_FILE);
-      // If journal file also exists just delete backup file.
-      if (journalFile.exists()) {
-        backupFile.delete();
-      } else {
-        renameTo(backupFile, journalFile, false);
-      }
-    }
+    restoreBackup(new File(directory, JOURNAL_FILE_BACKUP), new File(directory, JOURNAL_FILE));
+    restoreBackup(new File(directory, BINARY_JOURNAL_FILE_BACKUP),
+            new File(directory, BINARY_JOURNAL_FILE));
 
     // Prefer to pick up where we left off.
-    DiskLruCache cache = new DiskLruCache(directory, appVersion, valueCount, maxSize);
-    if (cache.journalFile.exists()) {
+    DiskLruCache cache = new DiskLruCache(directory, appVersion, valueCount, maxSize,
+            groupCommitIntervalMillis, groupCommitBatchSize, journalFormat);
+    boolean binary = journalFormat == JournalFormat.BINARY && cache.binaryJournalFile.exists();
+    if (binary || cache.journalFile.exists()) {
       try {
-        cache.readJournal();
+        if (binary) {
+          cache.readBinaryJournal();
+        } else {
+          cache.readJournal();
+        }
         cache.processJournal();
+        if (cache.isGroupCommit()) {
+          cache.reconcileFiles();
+        }
+        cache.entries.putAll(cache.lruEntries);
+        if (journalFormat == JournalFormat.BINARY && !cache.binaryJournal) {
+          cache.migrationPending = true;
+          cache.executorService.submit(cache.cleanupCallable);
+        }
         return cache;
+      } catch (ClosedByInterruptException interrupted) {
+        // Interrupted while reading: the journal isn't corrupt, keep the cache.
+        throw interrupted;
       } catch (IOException journalIsCorrupt) {
         System.out
                 .println("DiskLruCache "
@@ -183,11 +328,23 @@ public final class DiskLruCache implements Closeable {
 
     // Create a new empty cache.
     directory.mkdirs();
-    cache = new DiskLruCache(directory, appVersion, valueCount, maxSize);
+    cache = new DiskLruCache(directory, appVersion, valueCount, maxSize,
+            groupCommitIntervalMillis, groupCommitBatchSize, journalFormat);
     cache.rebuildJournal();
     return cache;
   }
 
+  private static void restoreBackup(File backupFile, File journalFile) throws IOException {
+    if (backupFile.exists()) {
+      // If journal file also exists just delete backup file.
+      if (journalFile.exists()) {
+        backupFile.delete();
+      } else {
+        renameTo(backupFile, journalFile, false);
+      }
+    }
+  }
+
   private void readJournal() throws IOException {
     StrictLineReader reader = new StrictLineReader(new FileInputStream(journalFile), Util.US_ASCII);
     try {
@@ -220,14 +377,112 @@ public final class DiskLruCache implements Closeable {
       if (reader.hasUnterminatedLine()) {
         rebuildJournal();
       } else {
-        journalWriter = new BufferedWriter(new OutputStreamWriter(
-                new FileOutputStream(journalFile, true), Util.US_ASCII));
+        journalWriter = newJournalWriter(journalFile);
       }
     } finally {
       Util.closeQuietly(reader);
     }
   }
 
+  /**
+   * Reads the binary journal through a memory mapped buffer, applying its
+   * records as {@link #readJournalLine} does for the text journal.
+   */
+  private void readBinaryJournal() throws IOException {
+    RandomAccessFile file = new RandomAccessFile(binaryJournalFile, "r");
+    try {
+      MappedByteBuffer buffer = map(file.getChannel());
+
+      if (buffer.remaining() < BINARY_HEADER_LENGTH) {
+        throw new IOException("unexpected journal header: truncated");
+      }
+      int magic = buffer.getInt();
+      int version = buffer.getInt();
+      int appVersionValue = buffer.getInt();
+      int valueCountValue = buffer.getInt();
+      if (magic != BINARY_MAGIC
+              || version != BINARY_VERSION_1
+              || appVersionValue != appVersion
+              || valueCountValue != valueCount) {
+        throw new IOException("unexpected journal header: [" + magic + ", " + version + ", "
+                + valueCountValue + "]");
+      }
+
+      byte[] keyBytes = new byte[120];
+      int recordCount = 0;
+      boolean truncated = false;
+      while (buffer.hasRemaining()) {
+        if (buffer.remaining() < 2) {
+          truncated = true;
+          break;
+        }
+        byte opcode = buffer.get();
+        int keyLength = buffer.get() & 0xff;
+        if (keyLength == 0 || keyLength > keyBytes.length) {
+          throw new IOException("unexpected journal record: key length " + keyLength);
+        }
+        int recordLength = keyLength + (opcode == BINARY_CLEAN ? valueCount * 8 : 0);
+        if (buffer.remaining() < recordLength) {
+          truncated = true;
+          break;
+        }
+        buffer.get(keyBytes, 0, keyLength);
+        String key = new String(keyBytes, 0, keyLength, Util.US_ASCII);
+
+        if (opcode == BINARY_REMOVE) {
+          lruEntries.remove(key);
+        } else {
+          Entry entry = lruEntries.get(key);
+          if (entry == null) {
+            entry = new Entry(key);
+            lruEntries.put(key, entry);
+          }
+
+          if (opcode == BINARY_CLEAN) {
+            entry.readable = true;
+            entry.currentEditor = null;
+            for (int i = 0; i < valueCount; i++) {
+              entry.lengths[i] = buffer.getLong();
+            }
+          } else if (opcode == BINARY_DIRTY) {
+            entry.currentEditor = new Editor(entry);
+          } else if (opcode != BINARY_READ) {
+            // READ records were already applied by calling lruEntries.get().
+            throw new IOException("unexpected journal record: opcode " + opcode);
+          }
+        }
+        recordCount++;
+      }
+      redundantOpCount = recordCount - lruEntries.size();
+      binaryJournal = true;
+
+      // If we ended on a truncated record, rebuild the journal before appending to it.
+      if (truncated) {
+        rebuildJournal();
+      } else {
+        journalWriter = newJournalWriter(binaryJournalFile);
+      }
+    } finally {
+      Util.closeQuietly(file);
+    }
+  }
+
+  /**
+   * Maps the whole file of the channel. A channel is closed when the thread
+   * using it is interrupted, and the journal would then be taken for corrupt,
+   * so the interrupt is cleared while mapping and restored afterwards.
+   */
+  private static MappedByteBuffer map(FileChannel channel) throws IOException {
+    boolean interrupted = Thread.interrupted();
+    try {
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
   private void readJournalLine(String line) throws IOException {
     int firstSpace = line.indexOf(' ');
     if (firstSpace == -1) {
@@ -273,6 +528,7 @@ public final class DiskLruCache implements Closeable {
    */
   private void processJournal() throws IOException {
     deleteIfExists(journalFileTmp);
+    deleteIfExists(binaryJournalFileTmp);
     for (Iterator<Entry> i = lruEntries.values().iterator(); i.hasNext(); ) {
       Entry entry = i.next();
       if (entry.currentEditor == null) {
@@ -291,46 +547,253 @@ public final class DiskLruCache implements Closeable {
   }
 
   /**
-   * Creates a new journal that omits redundant information. This replaces the
-   * current journal if it exists.
+   * Reconciles the files of the directory with the journal, whose most recent
+   * records may have been lost with group commit: lengths are read from the
+   * clean files, entries missing one are dropped, and temporary files are
+   * deleted. Clean files of an entry unknown to the journal, committed before
+   * its CLEAN record was flushed, are adopted as an entry if every value is
+   * present, and deleted otherwise. An entry with a temporary file was being
+   * edited, maybe halfway through renaming its files, so it's dropped rather
+   * than mixing values of two edits. The journal is rebuilt if it was stale.
+   */
+  private void reconcileFiles() throws IOException {
+    boolean stale = false;
+    Set<String> orphans = new HashSet<String>();
+    Set<String> edited = new HashSet<String>();
+
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        String name = file.getName();
+        if (name.equals(JOURNAL_FILE) || name.equals(JOURNAL_FILE_TEMP)
+                || name.equals(JOURNAL_FILE_BACKUP) || name.equals(BINARY_JOURNAL_FILE)
+                || name.equals(BINARY_JOURNAL_FILE_TEMP)
+                || name.equals(BINARY_JOURNAL_FILE_BACKUP)) {
+          continue;
+        }
+        int dot = name.indexOf('.');
+        if (dot == -1) {
+          deleteIfExists(file);
+          continue;
+        }
+        if (name.endsWith(".tmp")) {
+          edited.add(name.substring(0, dot));
+          deleteIfExists(file);
+          continue;
+        }
+        String key = name.substring(0, dot);
+        if (lruEntries.containsKey(key)) {
+          continue;
+        }
+        if (isCleanFileName(name, dot) && LEGAL_KEY_PATTERN.matcher(key).matches()) {
+          orphans.add(key);
+        } else {
+          deleteIfExists(file);
+        }
+      }
+    }
+
+    for (String key : orphans) {
+      Entry entry = new Entry(key);
+      boolean complete = !edited.contains(key);
+      for (int t = 0; t < valueCount; t++) {
+        if (!entry.getCleanFile(t).exists()) {
+          complete = false;
+          break;
+        }
+      }
+      if (complete) {
+        entry.readable = true;
+        entry.sequenceNumber = nextSequenceNumber++;
+        lruEntries.put(key, entry);
+      } else {
+        for (int t = 0; t < valueCount; t++) {
+          deleteIfExists(entry.getCleanFile(t));
+        }
+      }
+      stale = true;
+    }
+
+    size = 0;
+    for (Iterator<Entry> i = lruEntries.values().iterator(); i.hasNext(); ) {
+      Entry entry = i.next();
+      boolean complete = !edited.contains(entry.key);
+      for (int t = 0; complete && t < valueCount; t++) {
+        File clean = entry.getCleanFile(t);
+        if (!clean.exists()) {
+          complete = false;
+          break;
+        }
+        long length = clean.length();
+        if (length != entry.lengths[t]) {
+          entry.lengths[t] = length;
+          stale = true;
+        }
+      }
+      if (complete) {
+        for (int t = 0; t < valueCount; t++) {
+          size += entry.lengths[t];
+        }
+      } else {
+        for (int t = 0; t < valueCount; t++) {
+          deleteIfExists(entry.getCleanFile(t));
+        }
+        i.remove();
+        stale = true;
+      }
+    }
+
+    if (stale) {
+      rebuildJournal();
+    }
+  }
+
+  /** Returns true if {@code name} is {@code key.i}, with i a value index. */
+  private boolean isCleanFileName(String name, int dot) {
+    if (dot == name.length() - 1 || name.length() - dot > 10) {
+      return false;
+    }
+    int index = 0;
+    for (int i = dot + 1; i < name.length(); i++) {
+      char c = name.charAt(i);
+      if (c < '0' || c > '9') {
+        return false;
+      }
+      index = index * 10 + (c - '0');
+    }
+    return index < valueCount;
+  }
+
+  /**
+   * Creates a new journal that omits redundant information, in the format of
+   * the cache. This replaces the current journal if it exists. Rebuilding a
+   * BINARY journal deletes the TEXT journal it was migrated from.
    */
   private synchronized void rebuildJournal() throws IOException {
     if (journalWriter != null) {
       journalWriter.close();
     }
 
-    Writer writer = new BufferedWriter(
-            new OutputStreamWriter(new FileOutputStream(journalFileTmp), Util.US_ASCII));
+    boolean binary = journalFormat == JournalFormat.BINARY;
+    File file = binary ? binaryJournalFile : journalFile;
+    File fileTmp = binary ? binaryJournalFileTmp : journalFileTmp;
+    File fileBackup = binary ? binaryJournalFileBackup : journalFileBackup;
+
+    OutputStream writer = new BufferedOutputStream(new FileOutputStream(fileTmp));
     try {
-      writer.write(MAGIC);
-      writer.write("\n");
-      writer.write(VERSION_1);
-      writer.write("\n");
-      writer.write(Integer.toString(appVersion));
-      writer.write("\n");
-      writer.write(Integer.toString(valueCount));
-      writer.write("\n");
-      writer.write("\n");
+      if (binary) {
+        writeInt(writer, BINARY_MAGIC);
+        writeInt(writer, BINARY_VERSION_1);
+        writeInt(writer, appVersion);
+        writeInt(writer, valueCount);
+      } else {
+        writer.write((MAGIC + "\n" + VERSION_1 + "\n" + appVersion + "\n" + valueCount + "\n\n")
+                .getBytes(Util.US_ASCII));
+      }
 
       for (Entry entry : lruEntries.values()) {
         if (entry.currentEditor != null) {
-          writer.write(DIRTY + ' ' + entry.key + '\n');
+          writeRecord(writer, binary, DIRTY, entry.key, null);
         } else {
-          writer.write(CLEAN + ' ' + entry.key + entry.getLengths() + '\n');
+          writeRecord(writer, binary, CLEAN, entry.key, entry.lengths);
         }
       }
     } finally {
       writer.close();
     }
 
-    if (journalFile.exists()) {
-      renameTo(journalFile, journalFileBackup, true);
+    if (file.exists()) {
+      renameTo(file, fileBackup, true);
+    }
+    renameTo(fileTmp, file, false);
+    fileBackup.delete();
+
+    if (binary) {
+      // The TEXT journal this one was migrated from is no longer needed.
+      deleteIfExists(journalFile);
+      deleteIfExists(journalFileBackup);
+    }
+
+    binaryJournal = binary;
+    migrationPending = false;
+    journalWriter = newJournalWriter(file);
+    pendingRecords = 0;
+  }
+
+  private static OutputStream newJournalWriter(File file) throws IOException {
+    return new BufferedOutputStream(new FileOutputStream(file, true));
+  }
+
+  /** Writes a journal record, as a text line or as a binary record. */
+  private static void writeRecord(OutputStream out, boolean binary, String type, String key,
+          long[] lengths) throws IOException {
+    if (!binary) {
+      StringBuilder line = new StringBuilder(type).append(' ').append(key);
+      if (lengths != null) {
+        for (long length : lengths) {
+          line.append(' ').append(length);
+        }
+      }
+      out.write(line.append('\n').toString().getBytes(Util.US_ASCII));
+      return;
+    }
+
+    byte opcode;
+    if (type.equals(CLEAN)) {
+      opcode = BINARY_CLEAN;
+    } else if (type.equals(DIRTY)) {
+      opcode = BINARY_DIRTY;
+    } else if (type.equals(REMOVE)) {
+      opcode = BINARY_REMOVE;
+    } else {
+      opcode = BINARY_READ;
     }
-    renameTo(journalFileTmp, journalFile, false);
-    journalFileBackup.delete();
 
-    journalWriter = new BufferedWriter(
-            new OutputStreamWriter(new FileOutputStream(journalFile, true), Util.US_ASCII));
+    out.write(opcode);
+    out.write(key.length());
+    out.write(key.getBytes(Util.US_ASCII));
+    if (lengths != null) {
+      for (long length : lengths) {
+        writeInt(out, (int) (length >>> 32));
+        writeInt(out, (int) length);
+      }
+    }
+  }
+
+  private static void writeInt(OutputStream out, int value) throws IOException {
+    out.write(value >>> 24);
+    out.write(value >>> 16);
+    out.write(value >>> 8);
+    out.write(value);
+  }
+
+  private boolean isGroupCommit() {
+    return groupCommitIntervalMillis > 0;
+  }
+
+  /**
+   * Appends a record to the journal. Without group commit, records that must
+   * be durable are flushed right away and READ records stay buffered. With
+   * group commit, every record is flushed by the background writer.
+   */
+  private void writeJournalRecord(String type, String key, long[] lengths, boolean durable)
+          throws IOException {
+    writeRecord(journalWriter, binaryJournal, type, key, lengths);
+
+    if (!isGroupCommit()) {
+      if (durable) {
+        journalWriter.flush();
+      }
+      return;
+    }
+
+    pendingRecords++;
+    if (pendingRecords == groupCommitBatchSize) {
+      journalFlusher.execute(journalFlush);
+    } else if (!journalFlushScheduled) {
+      journalFlushScheduled = true;
+      journalFlusher.schedule(journalFlush, groupCommitIntervalMillis, TimeUnit.MILLISECONDS);
+    }
   }
 
   private static void deleteIfExists(File file) throws IOException {
@@ -348,14 +811,65 @@ public final class DiskLruCache implements Closeable {
     }
   }
 
+  /**
+   * Returns true if the entry named {@code key} exists and is readable. Unlike
+   * {@link #get}, no file is opened and no read is recorded, so the entry
+   * keeps its place in the LRU queue.
+   */
+  public boolean contains(String key) {
+    checkNotClosed();
+    validateKey(key);
+    Entry entry = entries.get(key);
+    return entry != null && entry.readable;
+  }
+
   /**
    * Returns a snapshot of the entry named {@code key}, or null if it doesn't
    * exist is not currently readable. If a value is returned, it is moved to
    * the head of the LRU queue.
+   *
+   * <p>Reads of different entries, or of the same entry, run concurrently:
+   * the files are opened without the cache lock, and the snapshot is only
+   * returned if no edit of the entry was committed meanwhile. Otherwise the
+   * read is retried holding the lock.
    */
-  public synchronized Snapshot get(String key) throws IOException {
+  public Snapshot get(String key) throws IOException {
     checkNotClosed();
     validateKey(key);
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+
+    int version = entry.version;
+    if ((version & 1) == 0) {
+      if (!entry.readable) {
+        return null;
+      }
+
+      InputStream[] ins = openCleanFiles(entry);
+      if (ins != null) {
+        long sequenceNumber = entry.sequenceNumber;
+        long[] lengths = entry.lengths.clone();
+        if (entry.version == version) {
+          recordRead(entry);
+          return new Snapshot(key, sequenceNumber, ins, lengths);
+        }
+        closeAll(ins);
+      }
+    }
+
+    // An edit of the entry is being committed, or one of its files is missing.
+    return getLocked(key);
+  }
+
+  /**
+   * Reads the entry holding the cache lock and journals the read right away.
+   * This was the only read path before reads ran without the lock, so the
+   * read benchmark measures it as its baseline.
+   */
+  synchronized Snapshot getLocked(String key) throws IOException {
+    checkNotClosed();
     Entry entry = lruEntries.get(key);
     if (entry == null) {
       return null;
@@ -365,33 +879,73 @@ public final class DiskLruCache implements Closeable {
       return null;
     }
 
-    // Open all streams eagerly to guarantee that we see a single published
-    // snapshot. If we opened streams lazily then the streams could come
-    // from different edits.
+    InputStream[] ins = openCleanFiles(entry);
+    if (ins == null) {
+      // A file must have been deleted manually!
+      return null;
+    }
+
+    redundantOpCount++;
+    writeJournalRecord(READ, key, null, false);
+    if (journalRebuildRequired()) {
+      executorService.submit(cleanupCallable);
+    }
+
+    return new Snapshot(key, entry.sequenceNumber, ins, entry.lengths.clone());
+  }
+
+  /**
+   * Opens all the clean files of the entry eagerly, or none if one of them is
+   * missing. If streams were opened lazily they could come from different
+   * edits.
+   */
+  private InputStream[] openCleanFiles(Entry entry) {
     InputStream[] ins = new InputStream[valueCount];
     try {
       for (int i = 0; i < valueCount; i++) {
         ins[i] = new FileInputStream(entry.getCleanFile(i));
       }
     } catch (FileNotFoundException e) {
-      // A file must have been deleted manually!
-      for (int i = 0; i < valueCount; i++) {
-        if (ins[i] != null) {
-          Util.closeQuietly(ins[i]);
-        } else {
-          break;
-        }
-      }
+      closeAll(ins);
       return null;
     }
+    return ins;
+  }
 
-    redundantOpCount++;
-    journalWriter.append(READ + ' ' + key + '\n');
-    if (journalRebuildRequired()) {
+  private static void closeAll(InputStream[] ins) {
+    for (InputStream in : ins) {
+      if (in != null) {
+        Util.closeQuietly(in);
+      }
+    }
+  }
+
+  /**
+   * Buffers the LRU promotion of an entry read without the cache lock. The
+   * cleanup thread drains the buffer once it holds enough reads.
+   */
+  private void recordRead(Entry entry) {
+    readBuffer.add(entry);
+    if (readBufferSize.incrementAndGet() == READ_BUFFER_DRAIN_THRESHOLD) {
       executorService.submit(cleanupCallable);
     }
+  }
 
-    return new Snapshot(key, entry.sequenceNumber, ins, entry.lengths);
+  /**
+   * Moves the entries read without the cache lock to the head of the LRU
+   * queue, and journals their READ records. Must be called holding the lock.
+   */
+  private void drainReadBuffer() throws IOException {
+    Entry entry;
+    while ((entry = readBuffer.poll()) != null) {
+      readBufferSize.decrementAndGet();
+      // Promotes the entry, unless it was removed since it was read.
+      if (lruEntries.get(entry.key) != entry) {
+        continue;
+      }
+      redundantOpCount++;
+      writeJournalRecord(READ, entry.key, null, false);
+    }
   }
 
   /**
@@ -413,6 +967,7 @@ public final class DiskLruCache implements Closeable {
     if (entry == null) {
       entry = new Entry(key);
       lruEntries.put(key, entry);
+      entries.put(key, entry);
     } else if (entry.currentEditor != null) {
       return null; // Another edit is in progress.
     }
@@ -420,9 +975,9 @@ public final class DiskLruCache implements Closeable {
     Editor editor = new Editor(entry);
     entry.currentEditor = editor;
 
-    // Flush the journal before creating files to prevent file leaks.
-    journalWriter.write(DIRTY + ' ' + key + '\n');
-    journalWriter.flush();
+    // Flush the journal before creating files to prevent file leaks. With
+    // group commit, leaked files are deleted when the cache is opened.
+    writeJournalRecord(DIRTY, key, null, true);
     return editor;
   }
 
@@ -453,7 +1008,7 @@ public final class DiskLruCache implements Closeable {
    * this cache. This may be greater than the max size if a background
    * deletion is pending.
    */
-  public synchronized long size() {
+  public long size() {
     return size;
   }
 
@@ -477,35 +1032,41 @@ public final class DiskLruCache implements Closeable {
       }
     }
 
-    for (int i = 0; i < valueCount; i++) {
-      File dirty = entry.getDirtyFile(i);
-      if (success) {
-        if (dirty.exists()) {
-          File clean = entry.getCleanFile(i);
-          dirty.renameTo(clean);
-          long oldLength = entry.lengths[i];
-          long newLength = clean.length();
-          entry.lengths[i] = newLength;
-          size = size - oldLength + newLength;
+    // Odd while the files are replaced, so concurrent reads retry with the lock.
+    entry.version++;
+    try {
+      for (int i = 0; i < valueCount; i++) {
+        File dirty = entry.getDirtyFile(i);
+        if (success) {
+          if (dirty.exists()) {
+            File clean = entry.getCleanFile(i);
+            dirty.renameTo(clean);
+            long oldLength = entry.lengths[i];
+            long newLength = clean.length();
+            entry.lengths[i] = newLength;
+            size = size - oldLength + newLength;
+          }
+        } else {
+          deleteIfExists(dirty);
         }
-      } else {
-        deleteIfExists(dirty);
       }
-    }
 
-    redundantOpCount++;
-    entry.currentEditor = null;
-    if (entry.readable | success) {
-      entry.readable = true;
-      journalWriter.write(CLEAN + ' ' + entry.key + entry.getLengths() + '\n');
-      if (success) {
-        entry.sequenceNumber = nextSequenceNumber++;
+      redundantOpCount++;
+      entry.currentEditor = null;
+      if (entry.readable | success) {
+        entry.readable = true;
+        writeJournalRecord(CLEAN, entry.key, entry.lengths, true);
+        if (success) {
+          entry.sequenceNumber = nextSequenceNumber++;
+        }
+      } else {
+        lruEntries.remove(entry.key);
+        entries.remove(entry.key);
+        writeJournalRecord(REMOVE, entry.key, null, true);
       }
-    } else {
-      lruEntries.remove(entry.key);
-      journalWriter.write(REMOVE + ' ' + entry.key + '\n');
+    } finally {
+      entry.version++;
     }
-    journalWriter.flush();
 
     if (size > maxSize || journalRebuildRequired()) {
       executorService.submit(cleanupCallable);
@@ -536,18 +1097,25 @@ public final class DiskLruCache implements Closeable {
       return false;
     }
 
-    for (int i = 0; i < valueCount; i++) {
-      File file = entry.getCleanFile(i);
-      if (file.exists() && !file.delete()) {
-        throw new IOException("failed to delete " + file);
+    entry.version++;
+    try {
+      entry.readable = false;
+      for (int i = 0; i < valueCount; i++) {
+        File file = entry.getCleanFile(i);
+        if (file.exists() && !file.delete()) {
+          throw new IOException("failed to delete " + file);
+        }
+        size -= entry.lengths[i];
+        entry.lengths[i] = 0;
       }
-      size -= entry.lengths[i];
-      entry.lengths[i] = 0;
+    } finally {
+      entry.version++;
     }
 
     redundantOpCount++;
-    journalWriter.append(REMOVE + ' ' + key + '\n');
+    writeJournalRecord(REMOVE, key, null, false);
     lruEntries.remove(key);
+    entries.remove(key);
 
     if (journalRebuildRequired()) {
       executorService.submit(cleanupCallable);
@@ -570,8 +1138,10 @@ public final class DiskLruCache implements Closeable {
   /** Force buffered operations to the filesystem. */
   public synchronized void flush() throws IOException {
     checkNotClosed();
+    drainReadBuffer();
     trimToSize();
     journalWriter.flush();
+    pendingRecords = 0;
   }
 
   /** Closes this cache. Stored values will remain on the filesystem. */
@@ -584,12 +1154,20 @@ public final class DiskLruCache implements Closeable {
         entry.currentEditor.abort();
       }
     }
+    drainReadBuffer();
     trimToSize();
     journalWriter.close();
     journalWriter = null;
+    if (journalFlusher != null) {
+      journalFlusher.shutdown();
+    }
   }
 
   private void trimToSize() throws IOException {
+    if (size > maxSize) {
+      // Recently read entries must not be evicted first.
+      drainReadBuffer();
+    }
     while (size > maxSize) {
       Map.Entry<String, Entry> toEvict = lruEntries.entrySet().iterator().next();
       remove(toEvict.getKey());
@@ -787,6 +1365,8 @@ public final class DiskLruCache implements Closeable {
         try {
           abort();
         } catch (IOException ignored) {
+        } catch (IllegalStateException ignored) {
+          // The cache was closed, which aborted the edit.
         }
       }
     }
@@ -837,13 +1417,16 @@ public final class DiskLruCache implements Closeable {
     private final long[] lengths;
 
     /** True if this entry has ever been published. */
-    private boolean readable;
+    private volatile boolean readable;
+
+    /** Odd while an edit or removal of this entry replaces its files. */
+    private volatile int version;
 
     /** The ongoing edit or null if this entry is not being edited. */
     private Editor currentEditor;
 
     /** The sequence number of the most recently committed edit to this entry. */
-    private long sequenceNumber;
+    private volatile long sequenceNumber;
 
     private Entry(String key) {
       this.key = key;
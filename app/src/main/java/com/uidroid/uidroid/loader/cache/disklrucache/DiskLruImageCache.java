@@ -15,25 +15,157 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class DiskLruImageCache implements IImageCache {
 
     private static final String TAG = "DiskLruImageCache";
 
-    private DiskLruCache diskLruCache;
+    // Version of the entry keys, entries written with a former key format are discarded on open
+    private static final int APP_VERSION = 2;
+
+    // Journal records are flushed together, at most a second after they're written
+    private static final long GROUP_COMMIT_INTERVAL_MILLIS = 1000;
+    private static final int GROUP_COMMIT_BATCH_SIZE = 64;
+
+    /**
+     * Indexes of the values of an entry holding an original image: the bytes as they were
+     * downloaded, and a thumbnail encoded from a decoded bitmap, empty if there's none.
+     */
+    public static final int ORIGINAL_INDEX = 0;
+    public static final int THUMBNAIL_INDEX = 1;
+
+    private final Context context;
+    private final String uniqueName;
+    private final int diskCacheSize;
+    private final int valueCount;
+
+    // Opening of the DiskLruCache, started by the first thread using it, null until then
+    private final AtomicReference<FutureTask<DiskLruCache>> opening = new AtomicReference<>();
+
+    // Runs the openings, so cancelling a request waiting for the cache never interrupts one
+    private final ThreadPoolExecutor openingExecutor =
+            new ThreadPoolExecutor(0, 1, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+
+    // Sources of the hashed keys, only kept when the key index is enabled
+    private volatile Map<String, String> keyIndex;
     private final Bitmap.CompressFormat compressFormat = Bitmap.CompressFormat.JPEG;
 
     public DiskLruImageCache(Context context, String uniqueName, int diskCacheSize) {
+        this(context, uniqueName, diskCacheSize, 1);
+    }
+
+    /**
+     * Creates the disk cache with the provided number of values per entry. Caches of decoded
+     * bitmaps have a single value, caches of original images have two: ORIGINAL_INDEX and
+     * THUMBNAIL_INDEX. The cache is not opened here, but by the first background thread using it.
+     *
+     * @param context Context used to locate the cache directory.
+     * @param uniqueName String name of the cache directory.
+     * @param diskCacheSize int maximum size in bytes.
+     * @param valueCount int number of values per entry.
+     */
+    public DiskLruImageCache(Context context, String uniqueName, int diskCacheSize, int valueCount) {
+        this.context = context.getApplicationContext();
+        this.uniqueName = uniqueName;
+        this.diskCacheSize = diskCacheSize;
+        this.valueCount = valueCount;
+    }
+
+    /**
+     * Returns the DiskLruCache, opening it on the first call. Opening reads the journal, so it's
+     * run on a background thread of the cache, started by the first thread using the cache, while
+     * the threads using it wait for it to complete. While the cache is cleared, they wait for the
+     * new cache. If the cache can't be opened, it's opened again by the next thread using it.
+     *
+     * @return DiskLruCache or null if it can't be opened.
+     */
+    private DiskLruCache getDiskLruCache() {
+        FutureTask<DiskLruCache> task;
+
+        while ((task = opening.get()) == null) {
+            final FutureTask<DiskLruCache> created = new FutureTask<>(this::open);
+
+            if (opening.compareAndSet(null, created)) {
+                openingExecutor.execute(created);
+            }
+        }
+
+        DiskLruCache diskLruCache = null;
+
+        try {
+            diskLruCache = task.get();
+        } catch (InterruptedException e) {
+            // The request was cancelled while waiting for the cache, which is still opened
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException ignored) {
+
+        }
+
+        if (diskLruCache == null) {
+            opening.compareAndSet(task, null);
+        }
+
+        return diskLruCache;
+    }
+
+    /**
+     * Deletes the cache opened by the provided task, if any, then opens it again, empty. It runs
+     * on the thread of the openings, after the provided one.
+     */
+    private DiskLruCache reopen(FutureTask<DiskLruCache> previous) {
+        if (previous != null) {
+            // Runs it here if it was replaced before being started
+            previous.run();
+
+            DiskLruCache diskLruCache = null;
+
+            try {
+                diskLruCache = previous.get();
+            } catch (InterruptedException | ExecutionException ignored) {
+
+            }
+
+            if (diskLruCache != null) {
+                try {
+                    diskLruCache.delete();
+                } catch (IOException e) {
+                    DatabindingLogger.log(DatabindingLogger.Level.ERROR, "Cannot clear disk cache");
+                }
+            }
+        }
+
+        return open();
+    }
+
+    private DiskLruCache open() {
         try {
             final File diskCacheDir = getDiskCacheDir(context, uniqueName);
-            diskLruCache = DiskLruCache.open(diskCacheDir, 1, 1, diskCacheSize);
+
+            return DiskLruCache.open(diskCacheDir, APP_VERSION, valueCount, diskCacheSize,
+                    GROUP_COMMIT_INTERVAL_MILLIS, GROUP_COMMIT_BATCH_SIZE, DiskLruCache.JournalFormat.BINARY);
         } catch (IOException e) {
             DatabindingLogger.log(DatabindingLogger.Level.ERROR, "Cannot open disk cache");
+            return null;
         }
     }
 
     @Override
     public void put(String key, Bitmap data) {
+        final DiskLruCache diskLruCache = getDiskLruCache();
+
+        if (diskLruCache == null) {
+            return;
+        }
+
         final String formattedKey = getDiskLruCacheFormattedString(key);
 
         DiskLruCache.Editor editor = null;
@@ -45,18 +177,14 @@ public class DiskLruImageCache implements IImageCache {
             }
 
             if (writeBitmapToFile(data, editor)) {
-                diskLruCache.flush();
                 editor.commit();
             } else {
                 editor.abort();
             }
-        } catch (IOException e) {
-            try {
-                if (editor != null) {
-                    editor.abort();
-                }
-            } catch (IOException ignored) {
-
+        } catch (IOException | IllegalStateException e) {
+            // IllegalStateException if the cache was cleared meanwhile
+            if (editor != null) {
+                editor.abortUnlessCommitted();
             }
 
             DatabindingLogger.log(DatabindingLogger.Level.ERROR, "Cannot write disk cache");
@@ -66,6 +194,12 @@ public class DiskLruImageCache implements IImageCache {
 
     @Override
     public Bitmap get(String key) {
+        final DiskLruCache diskLruCache = getDiskLruCache();
+
+        if (diskLruCache == null) {
+            return null;
+        }
+
         final String formattedKey = getDiskLruCacheFormattedString(key);
 
         Bitmap bitmap = null;
@@ -80,9 +214,13 @@ public class DiskLruImageCache implements IImageCache {
             if (in != null) {
                 final BufferedInputStream buffIn =
                         new BufferedInputStream(in, 8 * 1024);
-                bitmap = BitmapFactory.decodeStream(buffIn);
+                // Mutable, so it can be pooled once it's no longer used
+                final BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inMutable = true;
+                bitmap = BitmapFactory.decodeStream(buffIn, null, options);
             }
-        } catch (IOException e) {
+        } catch (IOException | IllegalStateException e) {
+            // IllegalStateException if the cache was cleared meanwhile
             DatabindingLogger.log(DatabindingLogger.Level.ERROR, "Cannot read disk cache");
         }
 
@@ -91,24 +229,117 @@ public class DiskLruImageCache implements IImageCache {
 
     @Override
     public boolean contains(String key) {
-        boolean contained = false;
+        final DiskLruCache diskLruCache = getDiskLruCache();
 
-        try (DiskLruCache.Snapshot snapshot = diskLruCache.get(key)) {
-            contained = snapshot != null;
-        } catch (IOException e) {
+        if (diskLruCache == null) {
+            return false;
+        }
+
+        final String formattedKey = getDiskLruCacheFormattedString(key);
+
+        try {
+            return diskLruCache.contains(formattedKey);
+        } catch (IllegalStateException e) {
+            // The cache was cleared meanwhile
+            return false;
+        }
+    }
+
+    /**
+     * Returns an editor for the entry of the provided key, or null if the cache is not available
+     * or the entry is already being edited. Values are written through Editor.newOutputStream,
+     * for example while the image is downloaded, so the original bytes are stored as they are.
+     *
+     * @param key String key of the entry.
+     * @return DiskLruCache.Editor or null.
+     */
+    public DiskLruCache.Editor edit(String key) {
+        final DiskLruCache diskLruCache = getDiskLruCache();
+
+        if (diskLruCache == null) {
+            return null;
+        }
+
+        try {
+            return diskLruCache.edit(getDiskLruCacheFormattedString(key));
+        } catch (IOException | IllegalStateException e) {
+            // IllegalStateException if the cache was cleared meanwhile
+            DatabindingLogger.log(DatabindingLogger.Level.ERROR, "Cannot write disk cache");
+            return null;
+        }
+    }
+
+    /**
+     * Returns a snapshot of the values of the entry of the provided key, or null if it's not
+     * cached. The caller must close it.
+     *
+     * @param key String key of the entry.
+     * @return DiskLruCache.Snapshot or null.
+     */
+    public DiskLruCache.Snapshot getSnapshot(String key) {
+        final DiskLruCache diskLruCache = getDiskLruCache();
+
+        if (diskLruCache == null) {
+            return null;
+        }
+
+        try {
+            return diskLruCache.get(getDiskLruCacheFormattedString(key));
+        } catch (IOException | IllegalStateException e) {
+            // IllegalStateException if the cache was cleared meanwhile
             DatabindingLogger.log(DatabindingLogger.Level.ERROR, "Cannot read disk cache");
+            return null;
+        }
+    }
+
+    /**
+     * Encodes the thumbnail in the provided value of the entry, as PNG if it has an alpha channel
+     * or JPEG otherwise. A null thumbnail is stored as an empty value.
+     *
+     * @param editor DiskLruCache.Editor of the entry.
+     * @param index int index of the value.
+     * @param thumbnail Bitmap or null.
+     * @return true if the value was written.
+     */
+    public boolean writeThumbnail(DiskLruCache.Editor editor, int index, Bitmap thumbnail) {
+        if (thumbnail == null) {
+            try {
+                editor.set(index, "");
+                return true;
+            } catch (IOException | IllegalStateException e) {
+                return false;
+            }
         }
 
-        return contained;
+        final Bitmap.CompressFormat format = thumbnail.hasAlpha()
+                ? Bitmap.CompressFormat.PNG
+                : Bitmap.CompressFormat.JPEG;
+
+        try (OutputStream out = new BufferedOutputStream(editor.newOutputStream(index), 1024 * 8)) {
+            return thumbnail.compress(format, 90, out);
+        } catch (IOException | IllegalStateException e) {
+            // IllegalStateException if the cache was cleared meanwhile
+            return false;
+        }
     }
 
+    /**
+     * Deletes the cache and opens it again, empty, in the background. The opening is replaced
+     * first, so threads using the cache meanwhile wait for the new cache instead of opening the
+     * directory being deleted. Threads still holding the deleted cache get no value from it.
+     */
     @Override
     public void clear() {
-        try {
-            diskLruCache.delete();
-        } catch ( IOException e ) {
-            DatabindingLogger.log(DatabindingLogger.Level.ERROR, "Cannot clear disk cache");
-        }
+        FutureTask<DiskLruCache> previous;
+        FutureTask<DiskLruCache> clearing;
+
+        do {
+            previous = opening.get();
+            final FutureTask<DiskLruCache> deleted = previous;
+            clearing = new FutureTask<>(() -> reopen(deleted));
+        } while (!opening.compareAndSet(previous, clearing));
+
+        openingExecutor.execute(clearing);
     }
 
     private boolean writeBitmapToFile( Bitmap bitmap, DiskLruCache.Editor editor ) {
@@ -116,15 +347,48 @@ public class DiskLruImageCache implements IImageCache {
             final int mCompressQuality = 70;
 
             return bitmap.compress(compressFormat, mCompressQuality, out);
-        } catch (IOException e) {
+        } catch (IOException | IllegalStateException e) {
+            // IllegalStateException if the cache was cleared meanwhile
             return false;
         }
     }
 
-    private static String getDiskLruCacheFormattedString(String str) {
-        String formatted = str.replaceAll("[^a-zA-Z0-9]", "").toLowerCase();
+    /**
+     * Enables or disables the index of the sources of the hashed keys, to find which image an
+     * entry of the cache directory holds while debugging. It's kept in memory, and only holds the
+     * keys used after it's enabled.
+     *
+     * @param enabled boolean true to record the sources of the keys.
+     */
+    public void setKeyIndexEnabled(boolean enabled) {
+        keyIndex = enabled ? new ConcurrentHashMap<>() : null;
+    }
+
+    /**
+     * Returns the source of a hashed key, if the key index is enabled and has recorded it.
+     *
+     * @param formattedKey String hashed key, as named in the cache directory.
+     * @return String source or null.
+     */
+    public String getSource(String formattedKey) {
+        final Map<String, String> index = keyIndex;
+
+        return index != null ? index.get(formattedKey) : null;
+    }
+
+    /**
+     * Returns the key of the entry of the provided key in the DiskLruCache: the 128 bit hash of
+     * the whole key, so distinct sources and variants never share an entry.
+     */
+    private String getDiskLruCacheFormattedString(String str) {
+        final String formatted = KeyHash.hash(str);
+        final Map<String, String> index = keyIndex;
+
+        if (index != null) {
+            index.put(formatted, str);
+        }
 
-        return formatted.substring(0, str.length() >= 120 ? 110 : str.length());
+        return formatted;
     }
 
     private File getDiskCacheDir(Context context, String uniqueName) {
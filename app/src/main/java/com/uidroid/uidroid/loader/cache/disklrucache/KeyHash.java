@@ -0,0 +1,124 @@
+package com.uidroid.uidroid.loader.cache.disklrucache;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 128 bit MurmurHash3 (x64 variant) of the UTF-8 bytes of a String, written as 32 lowercase hex
+ * characters, so it's a valid DiskLruCache key. It's not cryptographic, but collisions of distinct
+ * keys are negligible for the number of entries of a disk cache.
+ */
+final class KeyHash {
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private KeyHash() {
+
+    }
+
+    static String hash(String key) {
+        final byte[] data = key.getBytes(StandardCharsets.UTF_8);
+        final int length = data.length;
+        final int blocks = length / 16;
+
+        long h1 = 0;
+        long h2 = 0;
+
+        for (int i = 0; i < blocks; i++) {
+            long k1 = getLong(data, i * 16);
+            long k2 = getLong(data, i * 16 + 8);
+
+            k1 *= C1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= C2;
+            h1 ^= k1;
+
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            k2 *= C2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= C1;
+            h2 ^= k2;
+
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        // Tail, up to 15 bytes
+        final int offset = blocks * 16;
+        long k1 = 0;
+        long k2 = 0;
+
+        for (int i = length - offset - 1; i >= 8; i--) {
+            k2 ^= (long) (data[offset + i] & 0xff) << ((i - 8) * 8);
+        }
+
+        for (int i = Math.min(length - offset, 8) - 1; i >= 0; i--) {
+            k1 ^= (long) (data[offset + i] & 0xff) << (i * 8);
+        }
+
+        if (length - offset > 8) {
+            k2 *= C2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= C1;
+            h2 ^= k2;
+        }
+
+        if (length - offset > 0) {
+            k1 *= C1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= C2;
+            h1 ^= k1;
+        }
+
+        h1 ^= length;
+        h2 ^= length;
+
+        h1 += h2;
+        h2 += h1;
+
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+
+        h1 += h2;
+        h2 += h1;
+
+        final char[] hex = new char[32];
+        putHex(hex, 0, h1);
+        putHex(hex, 16, h2);
+
+        return new String(hex);
+    }
+
+    private static long getLong(byte[] data, int offset) {
+        long value = 0;
+
+        for (int i = 7; i >= 0; i--) {
+            value = (value << 8) | (data[offset + i] & 0xff);
+        }
+
+        return value;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+
+        return k;
+    }
+
+    private static void putHex(char[] hex, int offset, long value) {
+        for (int i = 15; i >= 0; i--) {
+            hex[offset + i] = HEX[(int) (value & 0xf)];
+            value >>>= 4;
+        }
+    }
+
+}
@@ -0,0 +1,149 @@
+package com.uidroid.uidroid.loader.cache.memorycache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size bounded cache made of an LRU admission window and an LRU main area, with an IEvictionPolicy
+ * choosing between the entries leaving the window and the main area victims. It's not thread safe:
+ * callers must hold their own lock.
+ *
+ * @param <V> type of the cached values.
+ */
+abstract class AdmissionLruCache<V> {
+
+    // Least recently accessed item will be the first one iterated
+    private final Map<String, V> window = new LinkedHashMap<>(10, 0.75f, true);
+    private final Map<String, V> main = new LinkedHashMap<>(10, 0.75f, true);
+
+    private final IEvictionPolicy policy;
+    private final long windowLimit;
+    private final long mainLimit;
+
+    private long windowSize = 0;
+    private long mainSize = 0;
+
+    AdmissionLruCache(long limit, IEvictionPolicy policy) {
+        this.policy = policy;
+        this.windowLimit = (long) (limit * policy.getWindowRatio());
+        this.mainLimit = limit - windowLimit;
+    }
+
+    abstract long sizeOf(V value);
+
+    /**
+     * Called when a value leaves the cache, because it's evicted, replaced, removed or cleared.
+     */
+    void onRemoved(String key, V value) {
+
+    }
+
+    V get(String key) {
+        policy.recordAccess(key);
+
+        final V value = window.get(key);
+
+        return value != null ? value : main.get(key);
+    }
+
+    boolean contains(String key) {
+        return window.containsKey(key) || main.containsKey(key);
+    }
+
+    /**
+     * Returns true if the value can be cached: a value larger than the main area would evict every
+     * entry, then itself.
+     */
+    boolean fits(V value) {
+        return sizeOf(value) <= mainLimit;
+    }
+
+    void put(String key, V value) {
+        final V previous = remove(key);
+
+        if (!fits(value)) {
+            // Rejected without evicting the other entries
+            if (value != previous) {
+                onRemoved(key, value);
+            }
+
+            return;
+        }
+
+        window.put(key, value);
+        windowSize += sizeOf(value);
+
+        final Iterator<Map.Entry<String, V>> iterator = window.entrySet().iterator();
+
+        while (windowSize > windowLimit && iterator.hasNext()) {
+            final Map.Entry<String, V> eldest = iterator.next();
+            windowSize -= sizeOf(eldest.getValue());
+            iterator.remove();
+
+            admit(eldest.getKey(), eldest.getValue());
+        }
+    }
+
+    private void admit(String candidate, V value) {
+        main.put(candidate, value);
+        mainSize += sizeOf(value);
+
+        final Iterator<Map.Entry<String, V>> iterator = main.entrySet().iterator();
+
+        while (mainSize > mainLimit && iterator.hasNext()) {
+            final Map.Entry<String, V> victim = iterator.next();
+
+            if (victim.getKey().equals(candidate) || policy.admit(candidate, victim.getKey())) {
+                mainSize -= sizeOf(victim.getValue());
+                iterator.remove();
+                onRemoved(victim.getKey(), victim.getValue());
+            } else {
+                main.remove(candidate);
+                mainSize -= sizeOf(value);
+                onRemoved(candidate, value);
+                return;
+            }
+        }
+    }
+
+    V remove(String key) {
+        V value = window.remove(key);
+
+        if (value != null) {
+            windowSize -= sizeOf(value);
+        } else {
+            value = main.remove(key);
+
+            if (value != null) {
+                mainSize -= sizeOf(value);
+            }
+        }
+
+        if (value != null) {
+            onRemoved(key, value);
+        }
+
+        return value;
+    }
+
+    void clear() {
+        for (Map.Entry<String, V> entry : window.entrySet()) {
+            onRemoved(entry.getKey(), entry.getValue());
+        }
+
+        for (Map.Entry<String, V> entry : main.entrySet()) {
+            onRemoved(entry.getKey(), entry.getValue());
+        }
+
+        window.clear();
+        main.clear();
+        windowSize = 0;
+        mainSize = 0;
+    }
+
+    long size() {
+        return windowSize + mainSize;
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.uidroid.uidroid.loader.cache.memorycache;
+
+/**
+ * Count-min sketch estimating how often a key has been accessed recently. Counters saturate at 15
+ * and are all halved after a number of increments proportional to the sketch width, so old
+ * popularity fades away. Updates are not synchronized: a lost increment under concurrency only
+ * makes an estimate slightly lower, which the admission policy tolerates.
+ */
+final class FrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = { 0x97cb3127, 0x4f6a2a8d, 0x6b2f1c95, 0x3c79ac49 };
+
+    private final int[][] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int expectedEntries) {
+        int width = 16;
+        while (width < expectedEntries) {
+            width <<= 1;
+        }
+
+        this.table = new int[DEPTH][width];
+        this.mask = width - 1;
+        this.sampleSize = 10 * width;
+    }
+
+    void increment(int hash) {
+        boolean added = false;
+
+        for (int i = 0; i < DEPTH; i++) {
+            final int index = index(hash, i);
+
+            if (table[i][index] < MAX_COUNT) {
+                table[i][index]++;
+                added = true;
+            }
+        }
+
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    int frequency(int hash) {
+        int frequency = MAX_COUNT;
+
+        for (int i = 0; i < DEPTH; i++) {
+            frequency = Math.min(frequency, table[i][index(hash, i)]);
+        }
+
+        return frequency;
+    }
+
+    private void reset() {
+        for (int[] row : table) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] >>>= 1;
+            }
+        }
+
+        additions /= 2;
+    }
+
+    private int index(int hash, int row) {
+        int h = hash * SEEDS[row];
+        h ^= h >>> 16;
+
+        return h & mask;
+    }
+
+}
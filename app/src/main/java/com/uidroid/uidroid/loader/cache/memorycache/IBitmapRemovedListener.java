@@ -0,0 +1,13 @@
+package com.uidroid.uidroid.loader.cache.memorycache;
+
+import android.graphics.Bitmap;
+
+/**
+ * Listener notified when a bitmap leaves a memory cache, because it's evicted, replaced or
+ * cleared. It's called outside the cache locks.
+ */
+public interface IBitmapRemovedListener {
+
+    void onBitmapRemoved(Bitmap bitmap);
+
+}
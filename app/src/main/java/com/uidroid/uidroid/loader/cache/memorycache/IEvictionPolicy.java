@@ -0,0 +1,34 @@
+package com.uidroid.uidroid.loader.cache.memorycache;
+
+/**
+ * Policy deciding which bitmaps a memory cache keeps when it's full. New entries are first held in
+ * an admission window, sized as a fraction of the cache; entries leaving the window compete with
+ * the least recently used entry of the main area, and the policy decides which one survives.
+ */
+public interface IEvictionPolicy {
+
+    /**
+     * Records an access to the provided key, on every get and put.
+     *
+     * @param key String cache key.
+     */
+    void recordAccess(String key);
+
+    /**
+     * Returns true if the candidate leaving the admission window should replace the victim, the
+     * least recently used entry of the main area, false if the candidate should be evicted instead.
+     *
+     * @param candidate String key of the candidate.
+     * @param victim String key of the victim.
+     * @return boolean true to admit the candidate.
+     */
+    boolean admit(String candidate, String victim);
+
+    /**
+     * Returns the fraction of the cache size reserved to the admission window.
+     *
+     * @return float between 0 and 1.
+     */
+    float getWindowRatio();
+
+}
@@ -0,0 +1,24 @@
+package com.uidroid.uidroid.loader.cache.memorycache;
+
+/**
+ * Plain least recently used policy: every candidate is admitted, so the least recently used entry
+ * is always the one evicted.
+ */
+public class LruEvictionPolicy implements IEvictionPolicy {
+
+    @Override
+    public void recordAccess(String key) {
+
+    }
+
+    @Override
+    public boolean admit(String candidate, String victim) {
+        return true;
+    }
+
+    @Override
+    public float getWindowRatio() {
+        return 0;
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.uidroid.uidroid.loader.cache.memorycache;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Size bounded LRU cache guarded by a single lock: every get, put and eviction of any key
+ * contends on the same map.
+ *
+ * @param <V> type of the cached values.
+ */
+abstract class LruMemoryCache<V> {
+
+    private final Map<String, V> cache = Collections.synchronizedMap(
+            new LinkedHashMap<>(10, 1.5f, true));
+
+    private long size = 0;
+    private final long limit;
+
+    LruMemoryCache(long limit) {
+        this.limit = limit;
+    }
+
+    abstract long sizeOf(V value);
+
+    public V get(String id) {
+        if (id == null) {
+            return null;
+        }
+
+        return cache.get(id);
+    }
+
+    public boolean contains(String key) {
+        return key != null && cache.containsKey(key);
+    }
+
+    public void put(String id, V value) {
+        if (id == null || value == null) {
+            return;
+        }
+
+        // Size is updated under the map lock, so it doesn't drift under concurrent puts
+        synchronized (cache) {
+            final V previous = cache.put(id, value);
+            size += sizeOf(value) - (previous != null ? sizeOf(previous) : 0);
+
+            checkSize();
+        }
+    }
+
+    private void checkSize() {
+        if (size > limit) {
+            // Least recently accessed item will be the first one iterated
+            Iterator<Entry<String, V>> iterator = cache.entrySet().iterator();
+
+            while (iterator.hasNext()) {
+                Entry<String, V> entry = iterator.next();
+                size -= sizeOf(entry.getValue());
+                iterator.remove();
+
+                if (size <= limit) {
+                    break;
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+            size = 0;
+        }
+    }
+
+    /**
+     * Returns the total size in bytes of the cached values.
+     *
+     * @return long size in bytes.
+     */
+    public long getSize() {
+        synchronized (cache) {
+            return size;
+        }
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+
+}
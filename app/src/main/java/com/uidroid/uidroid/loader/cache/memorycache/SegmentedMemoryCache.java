@@ -0,0 +1,232 @@
+package com.uidroid.uidroid.loader.cache.memorycache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache split in independent segments, each one guarded by its own lock, so threads reading or
+ * writing different keys rarely contend. Each segment evicts values, as chosen by the
+ * IEvictionPolicy, when it exceeds its share of the limit. The total size is kept in an atomic
+ * counter, updated together with the segment size while holding the segment lock. Values leaving
+ * the cache are notified through onRemoved, outside the segment locks.
+ *
+ * <p>With several segments, a quarter of the limit is kept for an LRU overflow segment holding the
+ * values too large for the share of their segment, such as a full screen bitmap, so they don't
+ * flush their segment. Values too large for the overflow segment are not cached.
+ *
+ * @param <V> type of the cached values.
+ */
+abstract class SegmentedMemoryCache<V> {
+
+    private final Segment[] segments;
+    private final Segment overflow;
+    private volatile boolean overflowed;
+    private final int mask;
+    private final AtomicLong size = new AtomicLong();
+    private final long limit;
+
+    private final class Segment extends AdmissionLruCache<V> {
+
+        private Segment(long limit, IEvictionPolicy policy) {
+            super(limit, policy);
+        }
+
+        // Values removed while holding the segment lock, notified after releasing it
+        private final List<V> removed = new ArrayList<>();
+
+        @Override
+        long sizeOf(V value) {
+            return SegmentedMemoryCache.this.sizeOf(value);
+        }
+
+        @Override
+        void onRemoved(String key, V value) {
+            if (isRemovedObserved()) {
+                removed.add(value);
+            }
+        }
+
+        private List<V> drainRemoved() {
+            if (removed.isEmpty()) {
+                return Collections.emptyList();
+            }
+
+            final List<V> values = new ArrayList<>(removed);
+            removed.clear();
+
+            return values;
+        }
+
+        private synchronized V getValue(String key) {
+            return get(key);
+        }
+
+        private synchronized boolean containsValue(String key) {
+            return contains(key);
+        }
+
+        private synchronized List<V> putValue(String key, V value) {
+            final long previous = size();
+
+            put(key, value);
+            SegmentedMemoryCache.this.size.addAndGet(size() - previous);
+
+            // The same value put again under its key is still cached
+            if (contains(key)) {
+                removed.remove(value);
+            }
+
+            return drainRemoved();
+        }
+
+        private synchronized List<V> removeValue(String key) {
+            final long previous = size();
+
+            remove(key);
+            SegmentedMemoryCache.this.size.addAndGet(size() - previous);
+
+            return drainRemoved();
+        }
+
+        private synchronized List<V> clearValues() {
+            final long previous = size();
+
+            clear();
+            SegmentedMemoryCache.this.size.addAndGet(-previous);
+
+            return drainRemoved();
+        }
+
+    }
+
+    /**
+     * Creates a cache holding up to limit bytes, split in the provided number of segments
+     * (rounded up to a power of two). The policy is shared by all the segments.
+     *
+     * @param limit long maximum size in bytes.
+     * @param segments int number of segments.
+     * @param policy IEvictionPolicy choosing the values to evict.
+     */
+    SegmentedMemoryCache(long limit, int segments, IEvictionPolicy policy) {
+        int count = 1;
+        while (count < segments) {
+            count <<= 1;
+        }
+
+        this.limit = limit;
+        this.mask = count - 1;
+
+        final long overflowLimit = count > 1 ? limit / 4 : 0;
+        this.overflow = count > 1 ? new Segment(overflowLimit, new LruEvictionPolicy()) : null;
+
+        @SuppressWarnings("unchecked")
+        final Segment[] array = (Segment[]) new SegmentedMemoryCache.Segment[count];
+        this.segments = array;
+
+        for (int i = 0; i < count; i++) {
+            this.segments[i] = new Segment((limit - overflowLimit) / count, policy);
+        }
+    }
+
+    abstract long sizeOf(V value);
+
+    /**
+     * Returns true if the values leaving the cache must be collected and notified to onRemoved.
+     */
+    boolean isRemovedObserved() {
+        return false;
+    }
+
+    /**
+     * Called for every value leaving the cache, because it's evicted, replaced or cleared, outside
+     * the segment locks.
+     */
+    void onRemoved(V value) {
+
+    }
+
+    public V get(String key) {
+        if (key == null) {
+            return null;
+        }
+
+        final V value = segment(key).getValue(key);
+
+        return value != null || !overflowed ? value : overflow.getValue(key);
+    }
+
+    public boolean contains(String key) {
+        return key != null && (segment(key).containsValue(key)
+                || overflowed && overflow.containsValue(key));
+    }
+
+    public void put(String key, V value) {
+        if (key == null || value == null) {
+            return;
+        }
+
+        final Segment segment = segment(key);
+
+        if (overflow == null) {
+            notifyRemoved(segment.putValue(key, value));
+            return;
+        }
+
+        final List<V> removed;
+        final List<V> overflowRemoved;
+
+        // The overflow segment is only locked within the lock of a segment, so a key moving
+        // between them is never cached in both
+        synchronized (segment) {
+            if (segment.fits(value)) {
+                overflowRemoved = overflowed ? overflow.removeValue(key) : Collections.emptyList();
+                removed = segment.putValue(key, value);
+            } else {
+                overflowed = true;
+                removed = segment.removeValue(key);
+                overflowRemoved = overflow.putValue(key, value);
+            }
+        }
+
+        notifyRemoved(removed);
+        notifyRemoved(overflowRemoved);
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            notifyRemoved(segment.clearValues());
+        }
+
+        if (overflow != null) {
+            notifyRemoved(overflow.clearValues());
+        }
+    }
+
+    private void notifyRemoved(List<V> values) {
+        for (int i = 0; i < values.size(); i++) {
+            onRemoved(values.get(i));
+        }
+    }
+
+    /**
+     * Returns the total size in bytes of the cached values.
+     *
+     * @return long size in bytes.
+     */
+    public long getSize() {
+        return size.get();
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+
+    private Segment segment(String key) {
+        final int hash = key.hashCode();
+
+        return segments[(hash ^ (hash >>> 16)) & mask];
+    }
+
+}
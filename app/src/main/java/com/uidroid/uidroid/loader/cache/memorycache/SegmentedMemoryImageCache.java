@@ -0,0 +1,78 @@
+package com.uidroid.uidroid.loader.cache.memorycache;
+
+import android.graphics.Bitmap;
+
+import com.uidroid.uidroid.loader.cache.IImageCache;
+
+/**
+ * Memory cache split in independent segments, each one guarded by its own lock, so threads reading
+ * or writing different keys rarely contend. Each segment evicts bitmaps, as chosen by the
+ * IEvictionPolicy (plain LRU by default), when it exceeds its share of the limit. The total size is
+ * kept in an atomic counter, updated together with the segment size while holding the segment lock.
+ * Bitmaps too large for the share of their segment, such as full screen ones, are kept in an
+ * overflow segment of a quarter of the limit.
+ */
+public class SegmentedMemoryImageCache extends SegmentedMemoryCache<Bitmap> implements IImageCache {
+
+    private static final int DEFAULT_SEGMENTS = 8;
+
+    private volatile IBitmapRemovedListener listener;
+
+    public SegmentedMemoryImageCache() {
+        this(Runtime.getRuntime().maxMemory() / 4, DEFAULT_SEGMENTS);
+    }
+
+    public SegmentedMemoryImageCache(long limit, int segments) {
+        this(limit, segments, new LruEvictionPolicy());
+    }
+
+    /**
+     * Creates a cache holding up to limit bytes of bitmaps, split in the provided number of
+     * segments (rounded up to a power of two). The policy is shared by all the segments.
+     *
+     * @param limit long maximum size in bytes.
+     * @param segments int number of segments.
+     * @param policy IEvictionPolicy choosing the bitmaps to evict.
+     */
+    public SegmentedMemoryImageCache(long limit, int segments, IEvictionPolicy policy) {
+        super(limit, segments, policy);
+    }
+
+    /**
+     * Sets the listener notified of every bitmap leaving the cache, to recycle its memory once
+     * it's no longer displayed.
+     *
+     * @param listener IBitmapRemovedListener or null.
+     */
+    public void setBitmapRemovedListener(IBitmapRemovedListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    boolean isRemovedObserved() {
+        return listener != null;
+    }
+
+    @Override
+    void onRemoved(Bitmap bitmap) {
+        final IBitmapRemovedListener current = listener;
+
+        if (current != null) {
+            current.onBitmapRemoved(bitmap);
+        }
+    }
+
+    @Override
+    long sizeOf(Bitmap bitmap) {
+        return getSizeInBytes(bitmap);
+    }
+
+    static long getSizeInBytes(Bitmap bitmap) {
+        if (bitmap == null) {
+            return 0;
+        }
+
+        return (long) bitmap.getRowBytes() * bitmap.getHeight();
+    }
+
+}
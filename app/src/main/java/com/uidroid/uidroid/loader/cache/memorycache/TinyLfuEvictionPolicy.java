@@ -0,0 +1,44 @@
+package com.uidroid.uidroid.loader.cache.memorycache;
+
+/**
+ * W-TinyLFU policy: new entries stay in a small LRU admission window, then a candidate leaving the
+ * window replaces the main area victim only if it's been accessed more often, as estimated by a
+ * frequency sketch. A fling through one-off images then can't evict the icons and avatars which
+ * are used again and again, while the window still absorbs short bursts of recent images.
+ */
+public class TinyLfuEvictionPolicy implements IEvictionPolicy {
+
+    private static final float DEFAULT_WINDOW_RATIO = 0.1f;
+
+    private final FrequencySketch sketch;
+    private final float windowRatio;
+
+    /**
+     * @param expectedEntries int number of entries the cache is expected to hold, used to size the
+     *                        frequency sketch.
+     */
+    public TinyLfuEvictionPolicy(int expectedEntries) {
+        this(expectedEntries, DEFAULT_WINDOW_RATIO);
+    }
+
+    public TinyLfuEvictionPolicy(int expectedEntries, float windowRatio) {
+        this.sketch = new FrequencySketch(expectedEntries);
+        this.windowRatio = windowRatio;
+    }
+
+    @Override
+    public void recordAccess(String key) {
+        sketch.increment(key.hashCode());
+    }
+
+    @Override
+    public boolean admit(String candidate, String victim) {
+        return sketch.frequency(candidate.hashCode()) > sketch.frequency(victim.hashCode());
+    }
+
+    @Override
+    public float getWindowRatio() {
+        return windowRatio;
+    }
+
+}
@@ -0,0 +1,38 @@
+package com.uidroid.uidroid.loader.worker;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.net.Uri;
+
+import com.uidroid.uidroid.loader.ImageLoader;
+import com.uidroid.uidroid.loader.ImageRequest;
+import com.uidroid.uidroid.loader.cache.ImageCache;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public class ImageContentUriWorker extends ImageWorker {
+
+    public ImageContentUriWorker(Context context, ImageRequest request, ImageLoader.ImageCallback callback, ImageCache imageCache) {
+        super(context, request, callback, imageCache, ImageCache.CachingStrategy.MEMORY);
+    }
+
+    @Override
+    protected Bitmap getBitmap(String source) {
+        try (InputStream inputStream = openStream(source)) {
+            if (inputStream == null) {
+                return null;
+            }
+
+            return decode(inputStream);
+        } catch (IOException | SecurityException e) {
+            return null;
+        }
+    }
+
+    @Override
+    protected InputStream openStream(String source) throws IOException {
+        return context.getContentResolver().openInputStream(Uri.parse(source));
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.uidroid.uidroid.loader.worker;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import com.uidroid.uidroid.loader.ImageLoader;
+import com.uidroid.uidroid.loader.ImageRequest;
+import com.uidroid.uidroid.loader.cache.ImageCache;
+import com.uidroid.uidroid.loader.cache.disklrucache.DiskLruCache;
+import com.uidroid.uidroid.loader.cache.disklrucache.DiskLruImageCache;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Worker decoding the original image of a source from the disk cache, at the size of the request.
+ * The thumbnail is decoded instead when the request is not larger than it.
+ */
+public class ImageDiskCacheWorker extends ImageWorker {
+
+    public ImageDiskCacheWorker(Context context, ImageRequest request, ImageLoader.ImageCallback callback, ImageCache imageCache) {
+        super(context, request, callback, imageCache, ImageCache.CachingStrategy.MEMORY);
+    }
+
+    @Override
+    protected Bitmap getBitmap(String source) {
+        try (InputStream inputStream = openStream(source)) {
+            if (inputStream == null) {
+                return null;
+            }
+
+            return decode(inputStream);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Opens the thumbnail or the original image, from a new snapshot which is closed together with
+     * the returned stream.
+     */
+    @Override
+    protected InputStream openStream(String source) {
+        final DiskLruCache.Snapshot snapshot = cache.getOriginal(source);
+
+        if (snapshot == null) {
+            return null;
+        }
+
+        final int index = useThumbnail(snapshot)
+                ? DiskLruImageCache.THUMBNAIL_INDEX
+                : DiskLruImageCache.ORIGINAL_INDEX;
+
+        return new FilterInputStream(snapshot.getInputStream(index)) {
+            @Override
+            public void close() {
+                snapshot.close();
+            }
+        };
+    }
+
+    private boolean useThumbnail(DiskLruCache.Snapshot snapshot) {
+        return cache.getThumbnailSize() > 0
+                && !request.hasTargetSize()
+                && request.getRequiredSize() <= cache.getThumbnailSize()
+                && snapshot.getLength(DiskLruImageCache.THUMBNAIL_INDEX) > 0;
+    }
+
+}
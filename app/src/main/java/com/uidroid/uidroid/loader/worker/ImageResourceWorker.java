@@ -1,10 +1,10 @@
 package com.uidroid.uidroid.loader.worker;
 
+import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.drawable.Drawable;
-import android.widget.ImageView;
 
 import androidx.core.content.res.ResourcesCompat;
 
@@ -14,8 +14,8 @@ import com.uidroid.uidroid.loader.cache.ImageCache;
 
 public class ImageResourceWorker extends ImageWorker {
 
-    public ImageResourceWorker(ImageView imageView, ImageRequest request, ImageLoader.ImageCallback callback, ImageCache imageCache) {
-        super(imageView, request, callback, imageCache, ImageCache.CachingStrategy.MEMORY);
+    public ImageResourceWorker(Context context, ImageRequest request, ImageLoader.ImageCallback callback, ImageCache imageCache) {
+        super(context, request, callback, imageCache, ImageCache.CachingStrategy.MEMORY);
     }
 
     @Override
@@ -23,14 +23,18 @@ public class ImageResourceWorker extends ImageWorker {
         try {
             int resource = Integer.parseInt(source);
 
-            Bitmap bitmap = BitmapFactory.decodeResource(view.getContext().getResources(),
-                    resource);
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inPreferredConfig = request.getConfig();
+            options.inMutable = true;
+
+            Bitmap bitmap = BitmapFactory.decodeResource(context.getResources(),
+                    resource, options);
 
             if (bitmap != null) {
                 return bitmap;
             }
 
-            Drawable drawable = ResourcesCompat.getDrawable(view.getResources(), resource, null);
+            Drawable drawable = ResourcesCompat.getDrawable(context.getResources(), resource, null);
             Canvas canvas = new Canvas();
 
             if (drawable != null) {
@@ -1,21 +1,26 @@
 package com.uidroid.uidroid.loader.worker;
 
+import android.content.Context;
 import android.graphics.Bitmap;
-import android.widget.ImageView;
 
 import com.uidroid.uidroid.loader.ImageLoader;
 import com.uidroid.uidroid.loader.ImageRequest;
 import com.uidroid.uidroid.loader.cache.ImageCache;
+import com.uidroid.uidroid.loader.cache.disklrucache.DiskLruCache;
+import com.uidroid.uidroid.loader.cache.disklrucache.DiskLruImageCache;
 
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 
 public class ImageUrlWorker extends ImageWorker {
 
-    public ImageUrlWorker(ImageView imageView, ImageRequest request, ImageLoader.ImageCallback callback, ImageCache imageCache) {
-        super(imageView, request, callback, imageCache, ImageCache.CachingStrategy.ALL);
+    public ImageUrlWorker(Context context, ImageRequest request, ImageLoader.ImageCallback callback, ImageCache imageCache) {
+        super(context, request, callback, imageCache, ImageCache.CachingStrategy.ALL);
     }
 
     @Override
@@ -23,31 +28,61 @@ public class ImageUrlWorker extends ImageWorker {
         return downloadBitmap(source);
     }
 
+    /**
+     * Downloads the image again, without writing it to the disk cache: the stream copying it
+     * there is drained by downloadBitmap once the image is decoded.
+     */
+    @Override
+    protected InputStream openStream(String source) throws IOException {
+        final HttpURLConnection conn = (HttpURLConnection) new URL(source).openConnection();
+
+        return new FilterInputStream(conn.getInputStream()) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    conn.disconnect();
+                }
+            }
+        };
+    }
+
     private Bitmap downloadBitmap(String url) {
         try {
-            Bitmap bitmap;
-
             // InputStream from url
             final URL imageUrl = new URL(url);
             final HttpURLConnection conn = (HttpURLConnection) imageUrl.openConnection();
-            final InputStream inputStream = conn.getInputStream();
-
-            // Creating byteArrayOutputStream to decode bitmap and cache it
-            ByteArrayOutputStream outputStreamUrl = new ByteArrayOutputStream();
-            byte[] buffer = new byte[1024];
-            int len;
-            while ((len = inputStream.read(buffer)) > -1) {
-                outputStreamUrl.write(buffer, 0, len);
+
+            // The original bytes are written to the disk cache while they're downloaded
+            final DiskLruCache.Editor editor = cachingStrategy == ImageCache.CachingStrategy.ALL
+                    ? cache.editOriginal(url)
+                    : null;
+
+            if (editor == null) {
+                // Decode the bitmap while it's downloaded, without buffering the whole response
+                try (InputStream inputStream = new BufferedInputStream(conn.getInputStream(), BUFFER_SIZE)) {
+                    return decode(inputStream);
+                } finally {
+                    conn.disconnect();
+                }
             }
-            outputStreamUrl.flush();
-            inputStream.close();
-            conn.disconnect();
 
-            // Decode byte[] to bitmap, but not from the cached file. Doing so permit us to get the bitmap also if memory is full
-            bitmap = decodeByteArray(outputStreamUrl.toByteArray(), request.getRequiredSize());
-            outputStreamUrl.close();
+            try (OutputStream outputStream = editor.newOutputStream(DiskLruImageCache.ORIGINAL_INDEX);
+                 TeeInputStream teeInputStream = new TeeInputStream(conn.getInputStream(), outputStream)) {
+                final Bitmap bitmap = decode(new BufferedInputStream(teeInputStream, BUFFER_SIZE));
 
-            return bitmap;
+                if (bitmap != null) {
+                    teeInputStream.drain();
+                    outputStream.close();
+                    cache.commitOriginal(editor, request, bitmap);
+                }
+
+                return bitmap;
+            } finally {
+                editor.abortUnlessCommitted();
+                conn.disconnect();
+            }
         } catch (Throwable e) {
             if (e instanceof OutOfMemoryError) {
                 cache.clear();
@@ -1,95 +1,308 @@
 package com.uidroid.uidroid.loader.worker;
 
 import android.graphics.Bitmap;
+import android.content.Context;
 import android.graphics.BitmapFactory;
 import android.widget.ImageView;
 
+import com.uidroid.uidroid.DatabindingLogger;
 import com.uidroid.uidroid.loader.ImageException;
 import com.uidroid.uidroid.loader.ImageLoader;
 import com.uidroid.uidroid.loader.ImageRequest;
+import com.uidroid.uidroid.loader.cache.BitmapPool;
 import com.uidroid.uidroid.loader.cache.ImageCache;
 
-import java.io.ByteArrayInputStream;
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.concurrent.Callable;
 
 public abstract class ImageWorker implements Callable<Void> {
 
+    protected static final int BUFFER_SIZE = 64 * 1024;
+
     protected final ImageCache cache;
     protected final ImageLoader.ImageCallback callback;
     protected final ImageRequest request;
-    protected final ImageView view;
+    protected final Context context;
     protected final ImageCache.CachingStrategy cachingStrategy;
 
-    public ImageWorker(ImageView view,
+    public ImageWorker(Context context,
                        ImageRequest request,
                        ImageLoader.ImageCallback callback,
                        ImageCache cache,
                        ImageCache.CachingStrategy cachingStrategy) {
-        this.view = view;
+        this.context = context;
         this.request = request;
         this.callback = callback;
         this.cache = cache;
         this.cachingStrategy = cachingStrategy;
     }
 
+    /**
+     * Fetches, transforms and caches the image, notifying the callback exactly once. Unchecked
+     * exceptions thrown by the source, the decoder, the transformation or the cache are reported
+     * as an error, instead of being kept by the Future of the task, so the loader always completes
+     * the request.
+     */
     @Override
     public Void call() {
-        // Check if imageView is being reused
-        if (view.getTag() == null || view.getTag() != request.getSource()) {
+        // Check if the request has been cancelled
+        if (Thread.currentThread().isInterrupted()) {
             return null;
         }
 
-        // Download image and cache it
-        Bitmap bitmap = getBitmap(request.getSource());
+        boolean delivered = false;
 
-        if (bitmap == null) {
-            callback.onError(new ImageException());
-            return null;
-        }
+        try {
+            // Download image and cache it
+            Bitmap bitmap = getBitmap(request.getSource());
 
-        cache.put(request.getSource(), bitmap, cachingStrategy);
+            if (bitmap == null) {
+                callback.onError(new ImageException());
+                return null;
+            }
 
-        // Check if imageView is being reused
-        if (view.getTag() == null || view.getTag() != request.getSource()) {
-            return null;
+            if (request.getTransformation() != null) {
+                bitmap = request.getTransformation().transform(bitmap);
+            }
+
+            // Set bitmap to the waiting views with a runnable in the main thread. The loader retains
+            // the bitmap here, before it's cached, so an immediate eviction can't pool it, until
+            // onCached: the disk cache still compresses it after it's displayed
+            callback.onSuccess(bitmap, request);
+            delivered = true;
+
+            try {
+                cache.put(request, bitmap, cachingStrategy);
+            } finally {
+                callback.onCached(bitmap);
+            }
+        } catch (RuntimeException e) {
+            DatabindingLogger.log(DatabindingLogger.Level.ERROR,
+                    "Cannot load image " + request.getSource() + ": " + e);
+
+            if (!delivered) {
+                callback.onError(e);
+            }
         }
 
-        // Set bitmap with a runnable in the main thread
-        callback.onSuccess(bitmap, view, request);
         return null;
     }
 
     protected abstract Bitmap getBitmap(String source);
 
-    static Bitmap decodeByteArray(byte[] bytes, int requiredSize) {
+    /**
+     * Opens the encoded image of the provided source, to read it again from the start when the
+     * stream being decoded has been consumed. Workers which can't read their source again return
+     * null, and their decoding fails instead of being retried.
+     *
+     * @param source String source of the request.
+     * @return InputStream of the encoded image, closed by the caller, or null.
+     * @throws IOException if the source can't be opened.
+     */
+    protected InputStream openStream(String source) throws IOException {
+        return null;
+    }
+
+    /**
+     * Decodes the stream to the size requested: exactly the target size if the request has one,
+     * otherwise sampled down to the required size. The bounds are read from the head of the
+     * stream, which is then reset and decoded in a single pass, so the encoded image is never
+     * held in memory as a whole: at most BUFFER_SIZE bytes are kept to reset the stream, and if
+     * the decoder needs more than that to read the bounds (large metadata before the image data)
+     * the image is decoded from the source reopened by openStream. The bitmap is decoded mutable,
+     * so it can be pooled once it's no longer used, and into a pooled bitmap when the pool has
+     * one large enough. If the pooled bitmap turns out not to be reusable for the image, the
+     * image is decoded again from the reopened source, into a new bitmap.
+     *
+     * @param inputStream InputStream of the encoded image, closed by the caller.
+     * @return Bitmap or null.
+     * @throws IOException if the stream can't be read.
+     */
+    protected Bitmap decode(InputStream inputStream) throws IOException {
+        final InputStream in = inputStream.markSupported()
+                ? inputStream
+                : new BufferedInputStream(inputStream, BUFFER_SIZE);
+
+        // Decode image size, keeping up to BUFFER_SIZE bytes read to decode them again
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        in.mark(BUFFER_SIZE);
+        BitmapFactory.decodeStream(in, null, bounds);
+
+        boolean reset;
+        try {
+            in.reset();
+            // Drop the mark, so the decoding pass doesn't keep the bytes read
+            in.mark(0);
+            reset = true;
+        } catch (IOException e) {
+            // The bounds were read past the mark limit
+            reset = false;
+        }
+
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            return null;
+        }
+
+        final BitmapPool pool = cache.getBitmapPool();
+        final BitmapFactory.Options options = request.hasTargetSize()
+                ? getTargetSizeOptions(bounds, request.getTargetWidth(), request.getTargetHeight(),
+                        request.getScaleType(), request.getConfig(), pool)
+                : getRequiredSizeOptions(bounds, request.getRequiredSize(), request.getConfig(), pool);
+
+        final Bitmap bitmap = reset
+                ? decodeStream(in, options, pool)
+                : decodeAgain(options, pool);
+
+        if (bitmap != null && request.hasTargetSize()) {
+            // The scaling densities are not display densities
+            bitmap.setDensity(context.getResources().getDisplayMetrics().densityDpi);
+        }
+
+        return bitmap;
+    }
+
+    /**
+     * Decodes the stream with the provided options. If the decoder rejects the pooled bitmap set
+     * as inBitmap, the stream has been consumed: the bitmap goes back to the pool and the image is
+     * decoded again, without inBitmap, from the reopened source.
+     */
+    private Bitmap decodeStream(InputStream in, BitmapFactory.Options options, BitmapPool pool) throws IOException {
         try {
-            // Decode image size
-            BitmapFactory.Options options = new BitmapFactory.Options();
-            options.inJustDecodeBounds = true;
-            InputStream stream1 = new ByteArrayInputStream(bytes);
-            BitmapFactory.decodeStream(stream1,null, options);
-            stream1.close();
-            // Scale image in order to reduce memory consumption
-            int width_tmp = options.outWidth, height_tmp = options.outHeight;
-            int scale = 1;
-            while (width_tmp / 2 >= requiredSize && height_tmp / 2 >= requiredSize) {
-                width_tmp /= 2;
-                height_tmp /= 2;
-                scale *= 2;
+            return BitmapFactory.decodeStream(in, null, options);
+        } catch (IllegalArgumentException e) {
+            if (options.inBitmap == null) {
+                throw e;
             }
-            // Decode with current scale values
-            BitmapFactory.Options options1 = new BitmapFactory.Options();
-            options1.inSampleSize = scale;
-            InputStream stream2 = new ByteArrayInputStream(bytes);
-            Bitmap bitmap = BitmapFactory.decodeStream(stream2, null, options1);
-            stream2.close();
 
+            pool.put(options.inBitmap);
+            options.inBitmap = null;
+
+            return decodeAgain(options, pool);
+        }
+    }
+
+    /**
+     * Decodes the image with the provided options from the reopened source, or returns null if
+     * the source can't be reopened.
+     */
+    private Bitmap decodeAgain(BitmapFactory.Options options, BitmapPool pool) throws IOException {
+        try (InputStream inputStream = openStream(request.getSource())) {
+            if (inputStream == null) {
+                return null;
+            }
+
+            return decodeStream(new BufferedInputStream(inputStream, BUFFER_SIZE), options, pool);
+        }
+    }
+
+    /**
+     * Returns the options sampling the image down by powers of two while both sides stay above the
+     * required size.
+     */
+    static BitmapFactory.Options getRequiredSizeOptions(BitmapFactory.Options bounds,
+                                                        int requiredSize,
+                                                        Bitmap.Config config,
+                                                        BitmapPool pool) {
+        // Scale image in order to reduce memory consumption
+        int width_tmp = bounds.outWidth, height_tmp = bounds.outHeight;
+        int scale = 1;
+        while (width_tmp / 2 >= requiredSize && height_tmp / 2 >= requiredSize) {
+            width_tmp /= 2;
+            height_tmp /= 2;
+            scale *= 2;
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = scale;
+        options.inPreferredConfig = config;
+        options.inMutable = true;
+        // Sampled sizes are rounded up by some decoders
+        options.inBitmap = pool.get(width_tmp + 1, height_tmp + 1, config);
+
+        return options;
+    }
+
+    /**
+     * Returns the options decoding the image to the size at which the scale type displays it in
+     * the target bounds: inSampleSize reduces the image by the largest power of two which keeps it
+     * above that size, then inDensity and inTargetDensity scale it exactly to it. Images are never
+     * scaled up.
+     */
+    static BitmapFactory.Options getTargetSizeOptions(BitmapFactory.Options bounds,
+                                                      int targetWidth,
+                                                      int targetHeight,
+                                                      ImageView.ScaleType scaleType,
+                                                      Bitmap.Config config,
+                                                      BitmapPool pool) {
+        final float scale = Math.min(1f, getTargetScale(bounds.outWidth, bounds.outHeight,
+                targetWidth, targetHeight, scaleType));
+
+        int sampleSize = 1;
+        while (1f / (sampleSize * 2) >= scale) {
+            sampleSize *= 2;
+        }
+
+        final int sampledWidth = bounds.outWidth / sampleSize;
+        final int width = Math.max(1, Math.round(bounds.outWidth * scale));
+        final int height = Math.max(1, Math.round(bounds.outHeight * scale));
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = config;
+        options.inMutable = true;
+        if (sampledWidth > width) {
+            options.inScaled = true;
+            options.inDensity = sampledWidth;
+            options.inTargetDensity = width;
+        }
+        options.inBitmap = pool.get(width + 1, height + 1, config);
+
+        return options;
+    }
+
+    private static float getTargetScale(int width, int height, int targetWidth, int targetHeight, ImageView.ScaleType scaleType) {
+        final float scaleX = (float) targetWidth / width;
+        final float scaleY = (float) targetHeight / height;
+
+        if (scaleType == null) {
+            return Math.min(scaleX, scaleY);
+        }
+
+        switch (scaleType) {
+            case CENTER_CROP:
+            case FIT_XY:
+                return Math.max(scaleX, scaleY);
+            case CENTER:
+            case MATRIX:
+                return 1f;
+            default:
+                return Math.min(scaleX, scaleY);
+        }
+    }
+
+    /**
+     * Scales a bitmap decoded for a larger size down to the required size, halving it as the
+     * sampled decoding does, so the result matches a bitmap decoded for that size.
+     *
+     * @param bitmap Bitmap to scale.
+     * @param requiredSize int required size.
+     * @return Bitmap scaled, or the same bitmap if it can't be halved.
+     */
+    public static Bitmap scaleDown(Bitmap bitmap, int requiredSize) {
+        int width = bitmap.getWidth(), height = bitmap.getHeight();
+        while (width / 2 >= requiredSize && height / 2 >= requiredSize) {
+            width /= 2;
+            height /= 2;
+        }
+
+        if (width == bitmap.getWidth()) {
             return bitmap;
-        } catch (IOException e) {
-            return null;
         }
+
+        return Bitmap.createScaledBitmap(bitmap, width, height, true);
     }
 
 }
@@ -0,0 +1,71 @@
+package com.uidroid.uidroid.loader.worker;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * InputStream copying every byte read to an OutputStream, so an image is written to the disk cache
+ * while it's decoded. It must be read by a single pass: buffers replaying marked bytes go on top of
+ * it, so the bytes are copied once.
+ */
+final class TeeInputStream extends FilterInputStream {
+
+    private final OutputStream out;
+
+    TeeInputStream(InputStream in, OutputStream out) {
+        super(in);
+        this.out = out;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final int b = super.read();
+
+        if (b != -1) {
+            out.write(b);
+        }
+
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        final int read = super.read(buffer, offset, length);
+
+        if (read > 0) {
+            out.write(buffer, offset, read);
+        }
+
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // Skipped bytes must be copied too
+        final byte[] buffer = new byte[(int) Math.min(n, 8 * 1024)];
+        final int read = read(buffer, 0, buffer.length);
+
+        return Math.max(read, 0);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * Reads the rest of the stream, copying it, for the decoders which stop before its end.
+     *
+     * @throws IOException if the stream can't be read.
+     */
+    void drain() throws IOException {
+        final byte[] buffer = new byte[8 * 1024];
+
+        //noinspection StatementWithEmptyBody
+        while (read(buffer, 0, buffer.length) != -1) {
+        }
+    }
+
+}
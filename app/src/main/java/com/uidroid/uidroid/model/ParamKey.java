@@ -0,0 +1,84 @@
+package com.uidroid.uidroid.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry which assigns a dense integer id to each distinct param key. ViewConfiguration params
+ * are stored in an array indexed by these ids, so reading a param through its id is an array load
+ * instead of a String hash lookup.
+ *
+ * The annotation processor generates the ParamKeys class, holding one id field for each key found
+ * in @UI.Param, @UI.StableParam and @UI.FieldConfiguration annotations, and the generated
+ * ViewConfigurationFactory puts params through those ids. Library binders resolve the ids of
+ * their own keys through this registry too, so every id is consistent in the whole application.
+ * Keys are registered only through getId: params put or read by a String key which isn't
+ * registered are held by name in their configuration, so the registry doesn't grow with them.
+ */
+public final class ParamKey {
+
+    private static final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private static final List<String> keys = new ArrayList<>();
+
+    private ParamKey() {
+
+    }
+
+    /**
+     * Returns the id of the provided key, assigning the next free id if it's the first time the
+     * key is seen.
+     *
+     * @param key String param key.
+     * @return int id of the key.
+     */
+    public static int getId(String key) {
+        final Integer id = ids.get(key);
+
+        if (id != null) {
+            return id;
+        }
+
+        synchronized (keys) {
+            Integer current = ids.get(key);
+
+            if (current == null) {
+                current = keys.size();
+                keys.add(key);
+                ids.put(key, current);
+            }
+
+            return current;
+        }
+    }
+
+    /**
+     * Returns the id of the provided key, or -1 if the key has never been registered.
+     *
+     * @param key String param key.
+     * @return int id of the key, or -1.
+     */
+    public static int findId(String key) {
+        if (key == null) {
+            return -1;
+        }
+
+        final Integer id = ids.get(key);
+
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Returns the key registered with the provided id, or null if no key has that id.
+     *
+     * @param id int id of the key.
+     * @return String param key, or null.
+     */
+    public static String getKey(int id) {
+        synchronized (keys) {
+            return id >= 0 && id < keys.size() ? keys.get(id) : null;
+        }
+    }
+
+}
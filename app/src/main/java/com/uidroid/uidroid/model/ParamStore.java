@@ -0,0 +1,550 @@
+package com.uidroid.uidroid.model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Class which stores the params of a ViewConfiguration. Params whose key is registered in ParamKey
+ * are held by id: the first DENSE_LIMIT ids in an array indexed by the id, the others in a sorted
+ * sparse array, so a high id doesn't size the array of every store. Params put with a key which
+ * is not registered are held by name, so arbitrary String keys don't grow the global registry; if
+ * the key is registered later, the param moves to its id on the first access by id.
+ *
+ * Integers, longs, doubles and booleans are held unboxed in primitive slots next to the object
+ * slots, and numbers or booleans parsed from a String param are cached on the first read, so
+ * reading params at binding time neither allocates nor parses again. A slot is reused when the
+ * same key is put again.
+ */
+final class ParamStore {
+
+    private static final int OBJECT = 0;
+    private static final int STRING = 1;
+    private static final int INT = 2;
+    private static final int LONG = 3;
+    private static final int DOUBLE = 4;
+    private static final int BOOLEAN = 5;
+
+    private static final int PARSED_INT = 1;
+    private static final int PARSED_LONG = 1 << 1;
+    private static final int PARSED_DOUBLE = 1 << 2;
+    private static final int PARSED_BOOLEAN = 1 << 3;
+
+    static final int DENSE_LIMIT = 32;
+
+    private static final Param[] EMPTY = new Param[0];
+    private static final int[] EMPTY_KEYS = new int[0];
+
+    private Param[] params = EMPTY;
+
+    private int[] sparseKeys = EMPTY_KEYS;
+    private Param[] sparseParams = EMPTY;
+    private int sparseSize = 0;
+
+    private Map<String, Param> named;
+
+    /**
+     * Single param slot. The value field holds the object for OBJECT and STRING params, and the
+     * boxed value for primitive params (lazily, if they were put unboxed).
+     */
+    private static final class Param {
+
+        private int type;
+        private long bits;
+        private Object value;
+
+        private int parsed;
+        private long parsedLong;
+        private double parsedDouble;
+        private boolean parsedBoolean;
+        private Integer parsedInteger;
+        private Double parsedDoubleObject;
+
+        private void set(int type, long bits, Object value) {
+            this.type = type;
+            this.bits = bits;
+            this.value = value;
+            this.parsed = 0;
+            this.parsedInteger = null;
+            this.parsedDoubleObject = null;
+        }
+
+    }
+
+    private Param slot(int key) {
+        Param param = param(key);
+
+        if (param == null) {
+            param = new Param();
+            insert(key, param);
+        }
+
+        return param;
+    }
+
+    private Param slot(String key) {
+        final int id = ParamKey.findId(key);
+
+        if (id >= 0) {
+            return slot(id);
+        }
+
+        if (named == null) {
+            named = new HashMap<>();
+        }
+
+        Param param = named.get(key);
+
+        if (param == null) {
+            param = new Param();
+            named.put(key, param);
+        }
+
+        return param;
+    }
+
+    private Param param(int key) {
+        if (key < 0) {
+            return null;
+        }
+
+        Param param = find(key);
+
+        if (param == null && named != null && !named.isEmpty()) {
+            // The key could have been registered after the param has been put by name
+            param = named.remove(ParamKey.getKey(key));
+
+            if (param != null) {
+                insert(key, param);
+            }
+        }
+
+        return param;
+    }
+
+    private Param param(String key) {
+        final int id = ParamKey.findId(key);
+
+        if (id >= 0) {
+            return param(id);
+        }
+
+        return named != null && key != null ? named.get(key) : null;
+    }
+
+    private Param find(int key) {
+        if (key < DENSE_LIMIT) {
+            return key < params.length ? params[key] : null;
+        }
+
+        final int index = Arrays.binarySearch(sparseKeys, 0, sparseSize, key);
+
+        return index >= 0 ? sparseParams[index] : null;
+    }
+
+    private void insert(int key, Param param) {
+        if (key < DENSE_LIMIT) {
+            if (key >= params.length) {
+                params = Arrays.copyOf(params, Math.min(DENSE_LIMIT, Math.max(key + 1, params.length * 2)));
+            }
+
+            params[key] = param;
+            return;
+        }
+
+        final int index = -Arrays.binarySearch(sparseKeys, 0, sparseSize, key) - 1;
+
+        if (sparseSize == sparseKeys.length) {
+            final int capacity = Math.max(4, sparseKeys.length * 2);
+
+            sparseKeys = Arrays.copyOf(sparseKeys, capacity);
+            sparseParams = Arrays.copyOf(sparseParams, capacity);
+        }
+
+        System.arraycopy(sparseKeys, index, sparseKeys, index + 1, sparseSize - index);
+        System.arraycopy(sparseParams, index, sparseParams, index + 1, sparseSize - index);
+
+        sparseKeys[index] = key;
+        sparseParams[index] = param;
+        sparseSize++;
+    }
+
+    synchronized void put(int key, Object value) {
+        setObject(slot(key), value);
+    }
+
+    synchronized void put(String key, Object value) {
+        setObject(slot(key), value);
+    }
+
+    synchronized void put(int key, int value) {
+        slot(key).set(INT, value, null);
+    }
+
+    synchronized void put(String key, int value) {
+        slot(key).set(INT, value, null);
+    }
+
+    synchronized void put(int key, long value) {
+        slot(key).set(LONG, value, null);
+    }
+
+    synchronized void put(String key, long value) {
+        slot(key).set(LONG, value, null);
+    }
+
+    synchronized void put(int key, double value) {
+        slot(key).set(DOUBLE, Double.doubleToRawLongBits(value), null);
+    }
+
+    synchronized void put(String key, double value) {
+        slot(key).set(DOUBLE, Double.doubleToRawLongBits(value), null);
+    }
+
+    synchronized void put(int key, boolean value) {
+        slot(key).set(BOOLEAN, value ? 1 : 0, null);
+    }
+
+    synchronized void put(String key, boolean value) {
+        slot(key).set(BOOLEAN, value ? 1 : 0, null);
+    }
+
+    synchronized Object get(int key) {
+        return boxedOrNull(param(key));
+    }
+
+    synchronized Object get(String key) {
+        return boxedOrNull(param(key));
+    }
+
+    synchronized String getString(int key) {
+        return stringOf(param(key));
+    }
+
+    synchronized String getString(String key) {
+        return stringOf(param(key));
+    }
+
+    synchronized Integer getInteger(int key) {
+        return integerOf(param(key));
+    }
+
+    synchronized Integer getInteger(String key) {
+        return integerOf(param(key));
+    }
+
+    synchronized int getInt(int key, int defaultValue) {
+        return intOf(param(key), defaultValue);
+    }
+
+    synchronized int getInt(String key, int defaultValue) {
+        return intOf(param(key), defaultValue);
+    }
+
+    synchronized long getLong(int key, long defaultValue) {
+        return longOf(param(key), defaultValue);
+    }
+
+    synchronized long getLong(String key, long defaultValue) {
+        return longOf(param(key), defaultValue);
+    }
+
+    synchronized Double getDouble(int key) {
+        return doubleOf(param(key));
+    }
+
+    synchronized Double getDouble(String key) {
+        return doubleOf(param(key));
+    }
+
+    synchronized double getDouble(int key, double defaultValue) {
+        return doubleOf(param(key), defaultValue);
+    }
+
+    synchronized double getDouble(String key, double defaultValue) {
+        return doubleOf(param(key), defaultValue);
+    }
+
+    synchronized boolean getBoolean(int key, boolean defaultValue) {
+        return booleanOf(param(key), defaultValue);
+    }
+
+    synchronized boolean getBoolean(String key, boolean defaultValue) {
+        return booleanOf(param(key), defaultValue);
+    }
+
+    private static void setObject(Param param, Object value) {
+        if (value instanceof String) {
+            param.set(STRING, 0, value);
+        } else if (value instanceof Integer) {
+            param.set(INT, (Integer) value, value);
+        } else if (value instanceof Long) {
+            param.set(LONG, (Long) value, value);
+        } else if (value instanceof Double) {
+            param.set(DOUBLE, Double.doubleToRawLongBits((Double) value), value);
+        } else if (value instanceof Boolean) {
+            param.set(BOOLEAN, (Boolean) value ? 1 : 0, value);
+        } else {
+            param.set(OBJECT, 0, value);
+        }
+    }
+
+    private static Object boxedOrNull(Param param) {
+        return param != null ? boxed(param) : null;
+    }
+
+    private static String stringOf(Param param) {
+        if (param != null && param.type == STRING) {
+            return (String) param.value;
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the Integer param, or the Integer parsed from a String param (which throws a
+     * NumberFormatException if the String is not a valid integer), null otherwise.
+     */
+    private static Integer integerOf(Param param) {
+        if (param == null) {
+            return null;
+        }
+
+        if (param.type == INT) {
+            return (Integer) boxed(param);
+        }
+
+        if (param.type == STRING) {
+            parseInt(param);
+
+            if (param.parsedInteger == null) {
+                param.parsedInteger = (int) param.parsedLong;
+            }
+
+            return param.parsedInteger;
+        }
+
+        return null;
+    }
+
+    private static int intOf(Param param, int defaultValue) {
+        if (param == null) {
+            return defaultValue;
+        }
+
+        if (param.type == INT) {
+            return (int) param.bits;
+        }
+
+        if (param.type == STRING) {
+            parseInt(param);
+
+            return (int) param.parsedLong;
+        }
+
+        return defaultValue;
+    }
+
+    private static long longOf(Param param, long defaultValue) {
+        if (param == null) {
+            return defaultValue;
+        }
+
+        if (param.type == LONG || param.type == INT) {
+            return param.bits;
+        }
+
+        if (param.type == STRING) {
+            if ((param.parsed & PARSED_LONG) == 0) {
+                param.parsedLong = Long.parseLong((String) param.value);
+                param.parsed |= PARSED_LONG;
+            }
+
+            return param.parsedLong;
+        }
+
+        return defaultValue;
+    }
+
+    /**
+     * Returns the Double param, or the Double parsed from a String param (which throws a
+     * NumberFormatException if the String is not a valid number), null otherwise.
+     */
+    private static Double doubleOf(Param param) {
+        if (param == null) {
+            return null;
+        }
+
+        if (param.type == DOUBLE) {
+            return (Double) boxed(param);
+        }
+
+        if (param.type == STRING) {
+            parseDouble(param);
+
+            if (param.parsedDoubleObject == null) {
+                param.parsedDoubleObject = param.parsedDouble;
+            }
+
+            return param.parsedDoubleObject;
+        }
+
+        return null;
+    }
+
+    private static double doubleOf(Param param, double defaultValue) {
+        if (param == null) {
+            return defaultValue;
+        }
+
+        if (param.type == DOUBLE) {
+            return Double.longBitsToDouble(param.bits);
+        }
+
+        if (param.type == STRING) {
+            parseDouble(param);
+
+            return param.parsedDouble;
+        }
+
+        return defaultValue;
+    }
+
+    private static boolean booleanOf(Param param, boolean defaultValue) {
+        if (param == null) {
+            return defaultValue;
+        }
+
+        if (param.type == BOOLEAN) {
+            return param.bits != 0;
+        }
+
+        if (param.type == STRING) {
+            if ((param.parsed & PARSED_BOOLEAN) == 0) {
+                param.parsedBoolean = Boolean.parseBoolean((String) param.value);
+                param.parsed |= PARSED_BOOLEAN;
+            }
+
+            return param.parsedBoolean;
+        }
+
+        return defaultValue;
+    }
+
+    /**
+     * Returns a snapshot of the params, with the primitive ones boxed.
+     *
+     * @return Map of the params.
+     */
+    synchronized Map<String, Object> toMap() {
+        final Map<String, Object> map = new LinkedHashMap<>();
+
+        for (int key = 0; key < params.length; key++) {
+            if (params[key] != null) {
+                map.put(ParamKey.getKey(key), boxed(params[key]));
+            }
+        }
+
+        for (int i = 0; i < sparseSize; i++) {
+            map.put(ParamKey.getKey(sparseKeys[i]), boxed(sparseParams[i]));
+        }
+
+        if (named != null) {
+            for (Map.Entry<String, Param> entry : named.entrySet()) {
+                map.put(entry.getKey(), boxed(entry.getValue()));
+            }
+        }
+
+        return Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Returns a hash of the keys and values of the params, without boxing them. Params held by
+     * name are combined independently of their order, since it isn't defined.
+     *
+     * @return int hash.
+     */
+    synchronized int contentHash() {
+        int hash = 0;
+
+        for (int key = 0; key < params.length; key++) {
+            if (params[key] != null) {
+                hash = 31 * (31 * hash + key) + valueHash(params[key]);
+            }
+        }
+
+        for (int i = 0; i < sparseSize; i++) {
+            hash = 31 * (31 * hash + sparseKeys[i]) + valueHash(sparseParams[i]);
+        }
+
+        if (named != null) {
+            int namedHash = 0;
+
+            for (Map.Entry<String, Param> entry : named.entrySet()) {
+                namedHash += entry.getKey().hashCode() ^ valueHash(entry.getValue());
+            }
+
+            hash = 31 * hash + namedHash;
+        }
+
+        return hash;
+    }
+
+    private static int valueHash(Param param) {
+        switch (param.type) {
+            case INT:
+                return (int) param.bits;
+            case LONG:
+                return (int) (param.bits ^ (param.bits >>> 32));
+            case DOUBLE:
+                final long bits = Double.doubleToLongBits(Double.longBitsToDouble(param.bits));
+                return (int) (bits ^ (bits >>> 32));
+            case BOOLEAN:
+                return param.bits != 0 ? 1231 : 1237;
+            default:
+                return param.value != null ? param.value.hashCode() : 0;
+        }
+    }
+
+    /**
+     * Parses an int from a String param, once: the result is cached until the param is replaced.
+     * The parsed value is shared with getLong, since an int is always a valid long.
+     */
+    private static void parseInt(Param param) {
+        if ((param.parsed & PARSED_INT) == 0) {
+            param.parsedLong = Integer.parseInt((String) param.value);
+            param.parsed |= PARSED_INT | PARSED_LONG;
+        }
+    }
+
+    private static void parseDouble(Param param) {
+        if ((param.parsed & PARSED_DOUBLE) == 0) {
+            param.parsedDouble = Double.parseDouble((String) param.value);
+            param.parsed |= PARSED_DOUBLE;
+        }
+    }
+
+    private static Object boxed(Param param) {
+        if (param.value == null) {
+            switch (param.type) {
+                case INT:
+                    param.value = (int) param.bits;
+                    break;
+                case LONG:
+                    param.value = param.bits;
+                    break;
+                case DOUBLE:
+                    param.value = Double.longBitsToDouble(param.bits);
+                    break;
+                case BOOLEAN:
+                    param.value = param.bits != 0;
+                    break;
+            }
+        }
+
+        return param.value;
+    }
+
+}
@@ -6,10 +6,12 @@ import com.uidroid.uidroid.handler.IViewAction;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Class representing the data to display in a view. From the specific instance of ViewModel views
@@ -26,6 +28,14 @@ public final class ViewConfiguration {
         boolean match(String key, ViewConfiguration configuration);
     }
 
+    /**
+     * Interface for being notified when a configuration of an observed tree becomes dirty, i.e.
+     * one of its params changes after it has been bound.
+     */
+    public interface IViewConfigurationObserver {
+        void onConfigurationDirty(ViewConfiguration configuration);
+    }
+
     private final String viewId;
     private final String viewType;
     private final String binderType;
@@ -34,8 +44,15 @@ public final class ViewConfiguration {
 
     private ViewConfiguration parent = null;
     private final List<ViewConfiguration> children;
+    private final ChildrenIndex index;
+    private final ContentVersion version;
     private IViewAction action;
 
+    private IViewConfigurationObserver observer;
+    private volatile boolean dirty = false;
+
+    private static final AtomicLong versions = new AtomicLong();
+
     /**
      *
      * @param id String id which will identify bindings, configuration and others component.
@@ -53,7 +70,9 @@ public final class ViewConfiguration {
         this.viewType = viewType;
         this.viewId = id;
         this.children = Collections.synchronizedList(new ArrayList<>());
-        this.params = new ConcurrentHashMap<>(new LinkedHashMap<>());
+        this.index = new ChildrenIndex();
+        this.version = new ContentVersion(versions.incrementAndGet());
+        this.params = new ParamStore();
     }
 
     /**
@@ -64,6 +83,8 @@ public final class ViewConfiguration {
      * @param key String which map this configuration in the children of the father (can be null).
      * @param parent ViewConfiguration which is the parent of this configuration in the view tree.
      * @param children List of ViewConfigurations children of this instance.
+     * @param index ChildrenIndex of the provided children.
+     * @param version ContentVersion of the provided params and children.
      * @param action IViewAction to be performed on click of the view.
      * @param params Miscellaneous objects which represents the effective data to display in the view.
      */
@@ -73,8 +94,10 @@ public final class ViewConfiguration {
                               String key,
                               ViewConfiguration parent,
                               List<ViewConfiguration> children,
+                              ChildrenIndex index,
+                              ContentVersion version,
                               IViewAction action,
-                              Map<String, Object> params) {
+                              ParamStore params) {
         if (id == null) {
             throw new RuntimeException("ViewConfiguration id cannot be null");
         }
@@ -84,6 +107,8 @@ public final class ViewConfiguration {
         this.viewId = id;
         this.parent = parent;
         this.children = children;
+        this.index = index;
+        this.version = version;
         this.action = action;
         this.params = params;
     }
@@ -95,7 +120,7 @@ public final class ViewConfiguration {
      * @return ViewConfiguration instance.
      */
     public ViewConfiguration cloneWithId(String id) {
-        return new ViewConfiguration(id, viewType, binderType, viewKey, parent, children, action, params);
+        return new ViewConfiguration(id, viewType, binderType, viewKey, parent, children, index, version, action, params);
     }
 
     /**
@@ -164,14 +189,14 @@ public final class ViewConfiguration {
         return children;
     }
 
+    /**
+     * Checks if this configuration has at least a child with the given key.
+     *
+     * @param key String representing the child.
+     * @return boolean.
+     */
     public boolean hasChild(String key) {
-        for (ViewConfiguration configuration: children) {
-            if (configuration.getKey().equals(key)) {
-                return true;
-            }
-        }
-
-        return false;
+        return index.getFirstByKey(key) != null;
     }
 
     /**
@@ -181,13 +206,7 @@ public final class ViewConfiguration {
      * @return ViewConfiguration child for the specified key.
      */
     public ViewConfiguration getChildConfigurationByKey(String key) {
-        for (ViewConfiguration configuration: children) {
-            if (configuration.getKey().equals(key)) {
-                return configuration;
-            }
-        }
-
-        return null;
+        return index.getFirstByKey(key);
     }
 
     /**
@@ -197,13 +216,7 @@ public final class ViewConfiguration {
      * @return ViewConfiguration child for the specified key.
      */
     public ViewConfiguration getChildConfigurationById(String id) {
-        for (ViewConfiguration configuration: children) {
-            if (configuration.getId().equals(id)) {
-                return configuration;
-            }
-        }
-
-        return null;
+        return index.getById(id);
     }
 
     /**
@@ -218,6 +231,8 @@ public final class ViewConfiguration {
             configuration.viewKey = key;
 
             children.add(configuration);
+            index.add(configuration);
+            updateVersion();
         }
     }
 
@@ -231,6 +246,8 @@ public final class ViewConfiguration {
             for (ViewConfiguration configuration : children) {
                 if (filter.match(configuration.getKey(), configuration)) {
                     children.remove(configuration);
+                    index.remove(configuration, children);
+                    updateVersion();
                     break;
                 }
             }
@@ -252,6 +269,8 @@ public final class ViewConfiguration {
                 if (filter.match(configuration.getKey(), configuration)) {
                     if (i == position) {
                         children.remove(configuration);
+                        index.remove(configuration, children);
+                        updateVersion();
                         break;
                     }
 
@@ -262,6 +281,8 @@ public final class ViewConfiguration {
             for (ViewConfiguration configuration : children) {
                 if (i == position) {
                     children.remove(configuration);
+                    index.remove(configuration, children);
+                    updateVersion();
                     break;
                 }
 
@@ -286,6 +307,7 @@ public final class ViewConfiguration {
      */
     public void setAction(IViewAction action) {
         this.action = action;
+        updateVersion();
     }
 
     /**
@@ -305,6 +327,84 @@ public final class ViewConfiguration {
             configuration.viewKey = key;
         }
         children.addAll(list);
+
+        for (ViewConfiguration configuration : list) {
+            if (configuration != null) {
+                index.add(configuration);
+            }
+        }
+
+        updateVersion();
+    }
+
+    /**
+     * Replaces the children which match the provided filter with the ViewConfigurations held in
+     * the provided list, under the specified key. The new children take the place of the first
+     * replaced one, or are appended if no child matched.
+     *
+     * @param filter IViewConfigurationFilter to select the children to replace (all if null).
+     * @param key String key for the new children, if null their own key is kept.
+     * @param list List of ViewConfiguration objects.
+     */
+    public synchronized void replaceChildrenConfigurations(IViewConfigurationFilter filter,
+                                                           String key,
+                                                           List<ViewConfiguration> list) {
+        int position = -1;
+
+        for (int i = children.size() - 1; i >= 0; i--) {
+            final ViewConfiguration configuration = children.get(i);
+
+            if (filter == null || filter.match(configuration.getKey(), configuration)) {
+                children.remove(i);
+                position = i;
+            }
+        }
+
+        if (position == -1) {
+            position = children.size();
+        }
+
+        final List<ViewConfiguration> replacements = new ArrayList<>(list.size());
+
+        for (ViewConfiguration configuration : list) {
+            if (configuration == null) {
+                continue;
+            }
+
+            configuration.parent = this;
+
+            if (key != null) {
+                configuration.viewKey = key;
+            }
+
+            replacements.add(configuration);
+        }
+
+        children.addAll(position, replacements);
+        index.rebuild(children);
+        updateVersion();
+    }
+
+    /**
+     * Returns a hash of the view and binder types, the params and the children of this
+     * configuration. Two configurations with the same id and content hash display the same data.
+     *
+     * @return int content hash.
+     */
+    public int getContentHash() {
+        int hash = Objects.hashCode(viewType);
+
+        hash = 31 * hash + Objects.hashCode(binderType);
+        hash = 31 * hash + params.contentHash();
+
+        synchronized (children) {
+            for (ViewConfiguration child : children) {
+                hash = 31 * hash + Objects.hashCode(child.getKey());
+                hash = 31 * hash + child.getContentHash();
+            }
+        }
+
+        return hash;
     }
 
     /**
@@ -318,15 +418,7 @@ public final class ViewConfiguration {
             return children;
         }
 
-        List<ViewConfiguration> results = new ArrayList<>();
-
-        for (ViewConfiguration configuration: children) {
-            if (configuration.getKey().equals(key)) {
-                results.add(configuration);
-            }
-        }
-
-        return results;
+        return index.getByKey(key);
     }
 
     /**
@@ -352,79 +444,436 @@ public final class ViewConfiguration {
     }
 
     /**
-     * Helper methods for accessing simple data with cast safety
+     * Class which indexes the children of a configuration by key and by id, so that lookups at
+     * binding time don't scan the children list. It's updated by every method which adds or
+     * removes children; lists held by key keep the order of the children list. Every structural
+     * modification increments a counter, which invalidates the filtered views of the children.
+     */
+    private static final class ChildrenIndex {
+
+        private final Map<String, List<ViewConfiguration>> byKey = new ConcurrentHashMap<>();
+        private final Map<String, ViewConfiguration> byId = new ConcurrentHashMap<>();
+
+        private final Map<IViewConfigurationFilter, FilteredChildren> filtered =
+                Collections.synchronizedMap(new WeakHashMap<>());
+
+        private volatile int modCount = 0;
+
+        private synchronized void add(ViewConfiguration configuration) {
+            modCount++;
+
+            final String key = configuration.getKey();
+
+            if (key != null) {
+                List<ViewConfiguration> list = byKey.get(key);
+
+                if (list == null) {
+                    list = Collections.synchronizedList(new ArrayList<>());
+                    byKey.put(key, list);
+                }
+
+                list.add(configuration);
+            }
+
+            if (!byId.containsKey(configuration.getId())) {
+                byId.put(configuration.getId(), configuration);
+            }
+        }
+
+        private synchronized void remove(ViewConfiguration configuration, List<ViewConfiguration> children) {
+            modCount++;
+
+            final String key = configuration.getKey();
+
+            if (key != null) {
+                final List<ViewConfiguration> list = byKey.get(key);
+
+                if (list != null) {
+                    list.remove(configuration);
+
+                    if (list.isEmpty()) {
+                        byKey.remove(key);
+                    }
+                }
+            }
+
+            if (byId.get(configuration.getId()) == configuration) {
+                byId.remove(configuration.getId());
+
+                // Another child could share the same id
+                synchronized (children) {
+                    for (ViewConfiguration child : children) {
+                        if (child.getId().equals(configuration.getId())) {
+                            byId.put(child.getId(), child);
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+
+        private synchronized void rebuild(List<ViewConfiguration> children) {
+            modCount++;
+
+            byKey.clear();
+            byId.clear();
+
+            synchronized (children) {
+                for (ViewConfiguration child : children) {
+                    add(child);
+                }
+            }
+        }
+
+        private ViewConfiguration getFirstByKey(String key) {
+            if (key == null) {
+                return null;
+            }
+
+            final List<ViewConfiguration> list = byKey.get(key);
+
+            if (list != null) {
+                synchronized (list) {
+                    return list.isEmpty() ? null : list.get(0);
+                }
+            }
+
+            return null;
+        }
+
+        private List<ViewConfiguration> getByKey(String key) {
+            final List<ViewConfiguration> list = byKey.get(key);
+
+            if (list != null) {
+                synchronized (list) {
+                    return new ArrayList<>(list);
+                }
+            }
+
+            return new ArrayList<>();
+        }
+
+        private ViewConfiguration getById(String id) {
+            if (id == null) {
+                return null;
+            }
+
+            return byId.get(id);
+        }
+
+        private List<ViewConfiguration> getFiltered(IViewConfigurationFilter filter,
+                                                    List<ViewConfiguration> children) {
+            final FilteredChildren cached = filtered.get(filter);
+
+            if (cached != null && cached.modCount == modCount) {
+                return cached.items;
+            }
+
+            synchronized (this) {
+                final int current = modCount;
+                final List<ViewConfiguration> items = new ArrayList<>();
+
+                synchronized (children) {
+                    for (ViewConfiguration child : children) {
+                        if (filter.match(child.getKey(), child)) {
+                            items.add(child);
+                        }
+                    }
+                }
+
+                final FilteredChildren result =
+                        new FilteredChildren(current, Collections.unmodifiableList(items));
+                filtered.put(filter, result);
+
+                return result.items;
+            }
+        }
+
+        private synchronized void invalidate() {
+            modCount++;
+        }
+
+    }
+
+    /**
+     * Filtered view of the children, valid until the modification counter of the index changes.
+     */
+    private static final class FilteredChildren {
+
+        private final int modCount;
+        private final List<ViewConfiguration> items;
+
+        private FilteredChildren(int modCount, List<ViewConfiguration> items) {
+            this.modCount = modCount;
+            this.items = items;
+        }
+
+    }
+
+    /**
+     * Returns an unmodifiable view of the children which match the given filter. The view is
+     * cached by filter identity and recomputed only after a structural modification of the
+     * children, so repeated size and positional accesses don't allocate nor run the filter again.
+     * If the filter result depends on data which changes without adding or removing children,
+     * invalidateFilteredChildren() must be called.
+     *
+     * @param filter IViewConfiguration filter.
+     * @return List of ViewConfiguration objects.
+     */
+    public List<ViewConfiguration> getFilteredChildrenConfigurations(IViewConfigurationFilter filter) {
+        if (filter == null) {
+            return children;
+        }
+
+        return index.getFiltered(filter, children);
+    }
+
+    /**
+     * Discards the cached filtered views of the children, see getFilteredChildrenConfigurations.
+     */
+    public void invalidateFilteredChildren() {
+        index.invalidate();
+    }
+
+    /**
+     * Returns the content version of this configuration. It changes every time a param is put, a
+     * child is added or removed or the action is set, and it's unique among all configurations
+     * (clones share it with the configuration they come from).
+     *
+     * @return long content version.
+     */
+    public long getVersion() {
+        return version.version;
+    }
+
+    /**
+     * Returns the content version of the sub-tree rooted in this configuration. It changes every
+     * time the version of this configuration or of any descendant changes.
+     *
+     * @return long sub-tree content version.
+     */
+    public long getTreeVersion() {
+        return version.treeVersion;
+    }
+
+    /**
+     * Assigns a new content version to this configuration and to the sub-tree versions of all its
+     * ancestors.
      */
+    private void updateVersion() {
+        final long stamp = versions.incrementAndGet();
+
+        version.version = stamp;
+
+        ViewConfiguration current = this;
 
-    private Map<String, Object> params;
+        while (current != null) {
+            current.version.treeVersion = stamp;
+            current = current.parent;
+        }
+    }
+
+    /**
+     * Enables the observable mode for this configuration and all its descendants: every time a
+     * param is put in one of them, the configuration is marked dirty and the observer is notified
+     * once, until the dirty flag is cleared. Pass null to disable it.
+     *
+     * @param observer IViewConfigurationObserver to notify, or null.
+     */
+    public void setObserver(IViewConfigurationObserver observer) {
+        this.observer = observer;
+    }
+
+    /**
+     * Checks if this configuration is in observable mode, i.e. if it or one of its ancestors has
+     * an observer.
+     *
+     * @return boolean.
+     */
+    public boolean isObserved() {
+        ViewConfiguration current = this;
+
+        while (current != null && current.observer == null) {
+            current = current.parent;
+        }
+
+        return current != null;
+    }
+
+    /**
+     * Checks if a param of this configuration changed since the last clearDirty() call, in
+     * observable mode.
+     *
+     * @return boolean.
+     */
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Clears the dirty flag, so the next param change notifies the observer again.
+     */
+    public void clearDirty() {
+        dirty = false;
+    }
+
+    /**
+     * Marks this configuration dirty and notifies the nearest observer among itself and its
+     * ancestors, if any and if it wasn't already dirty.
+     */
+    private void markDirty() {
+        ViewConfiguration current = this;
+
+        while (current != null && current.observer == null) {
+            current = current.parent;
+        }
+
+        if (current != null && !dirty) {
+            dirty = true;
+            current.observer.onConfigurationDirty(this);
+        }
+    }
+
+    /**
+     * Holder of the content versions, shared between a configuration and its clones as params and
+     * children are.
+     */
+    private static final class ContentVersion {
+
+        private volatile long version;
+        private volatile long treeVersion;
+
+        private ContentVersion(long version) {
+            this.version = version;
+            this.treeVersion = version;
+        }
+
+    }
+
+    /**
+     * Helper methods for accessing simple data with cast safety. Params are held by a ParamStore:
+     * primitives are stored unboxed and Strings parsed to numbers or booleans are parsed once.
+     * Every method is available both with the String key and with its ParamKey id: the latter
+     * skips the key lookup and makes the access an array load. String keys which are not
+     * registered in ParamKey are held by name and don't grow the registry.
+     */
+
+    private final ParamStore params;
 
     public synchronized void putParam(String key, Object param) {
         if (param == null) {
             return;
         }
 
-        if (params == null) {
-            this.params = new ConcurrentHashMap<>(new LinkedHashMap<>());
+        this.params.put(key, param);
+        onParamChanged();
+    }
+
+    public synchronized void putParam(String key, int param) {
+        this.params.put(key, param);
+        onParamChanged();
+    }
+
+    public synchronized void putParam(String key, long param) {
+        this.params.put(key, param);
+        onParamChanged();
+    }
+
+    public synchronized void putParam(String key, double param) {
+        this.params.put(key, param);
+        onParamChanged();
+    }
+
+    public synchronized void putParam(String key, boolean param) {
+        this.params.put(key, param);
+        onParamChanged();
+    }
+
+    public synchronized void putParam(int key, Object param) {
+        if (param == null) {
+            return;
         }
 
         this.params.put(key, param);
+        onParamChanged();
+    }
+
+    public synchronized void putParam(int key, int param) {
+        this.params.put(key, param);
+        onParamChanged();
+    }
+
+    public synchronized void putParam(int key, long param) {
+        this.params.put(key, param);
+        onParamChanged();
+    }
+
+    public synchronized void putParam(int key, double param) {
+        this.params.put(key, param);
+        onParamChanged();
+    }
+
+    public synchronized void putParam(int key, boolean param) {
+        this.params.put(key, param);
+        onParamChanged();
+    }
+
+    private void onParamChanged() {
+        updateVersion();
+        markDirty();
     }
 
     public Object getParam(String key) {
         return params.get(key);
     }
 
+    public Object getParam(int key) {
+        return params.get(key);
+    }
+
     public Object getParam(String key, Object defaultValue) {
-        if (params.get(key) != null) {
-            return params.get(key);
-        } else {
-            return defaultValue;
-        }
+        final Object param = params.get(key);
+
+        return param != null ? param : defaultValue;
     }
 
+    public Object getParam(int key, Object defaultValue) {
+        final Object param = params.get(key);
+
+        return param != null ? param : defaultValue;
+    }
+
+    /**
+     * Returns an unmodifiable snapshot of the params, use putParam to change them.
+     *
+     * @return Map of the params.
+     */
     public Map<String, Object> getParams() {
-        return params;
+        return params.toMap();
     }
 
     public String getStringParam(String key) {
-        final Object param = params.get(key);
-
-        if (param instanceof String) {
-            return (String) params.get(key);
-        }
+        return params.getString(key);
+    }
 
-        return null;
+    public String getStringParam(int key) {
+        return params.getString(key);
     }
 
     public Integer getIntegerParam(String key) {
-        final Object param = params.get(key);
+        return params.getInteger(key);
+    }
 
-        if (param instanceof Integer) {
-            return (Integer) param;
-        }
-        if (param instanceof String) {
-            try {
-                return Integer.valueOf((String) param);
-            } catch (ClassCastException e) {
-                return null;
-            }
-        }
-        return null;
+    public Integer getIntegerParam(int key) {
+        return params.getInteger(key);
     }
 
     public Double getDoubleParam(String key) {
-        final Object param = params.get(key);
+        return params.getDouble(key);
+    }
 
-        if (param instanceof Double) {
-            return (Double) param;
-        }
-        if (param instanceof String) {
-            try {
-                return Double.valueOf((String) param);
-            } catch (ClassCastException e) {
-                return null;
-            }
-        }
-        return null;
+    public Double getDoubleParam(int key) {
+        return params.getDouble(key);
     }
 
     public String getStringParam(String key, String defaultValue) {
@@ -433,33 +882,41 @@ public final class ViewConfiguration {
         return s != null ? s : defaultValue;
     }
 
+    public String getStringParam(int key, String defaultValue) {
+        final String s = getStringParam(key);
+
+        return s != null ? s : defaultValue;
+    }
+
     public double getDoubleParam(String key, double defaultValue) {
-        final Double d = getDoubleParam(key);
+        return params.getDouble(key, defaultValue);
+    }
 
-        return d != null ? d : defaultValue;
+    public double getDoubleParam(int key, double defaultValue) {
+        return params.getDouble(key, defaultValue);
     }
 
     public int getIntegerParam(String key, int defaultValue) {
-        final Integer i = getIntegerParam(key);
+        return params.getInt(key, defaultValue);
+    }
 
-        return i != null ? i : defaultValue;
+    public int getIntegerParam(int key, int defaultValue) {
+        return params.getInt(key, defaultValue);
     }
 
-    public boolean getBooleanParam(String key, boolean defaultValue) {
-        final Object param = params.get(key);
+    public long getLongParam(String key, long defaultValue) {
+        return params.getLong(key, defaultValue);
+    }
 
-        if (param instanceof Boolean) {
-            return (Boolean) param;
-        }
+    public long getLongParam(int key, long defaultValue) {
+        return params.getLong(key, defaultValue);
+    }
 
-        if (param instanceof String) {
-            try {
-                return Boolean.parseBoolean((String) param);
-            } catch (ClassCastException e) {
-                return defaultValue;
-            }
-        }
+    public boolean getBooleanParam(String key, boolean defaultValue) {
+        return params.getBoolean(key, defaultValue);
+    }
 
-        return defaultValue;
+    public boolean getBooleanParam(int key, boolean defaultValue) {
+        return params.getBoolean(key, defaultValue);
     }
 }
@@ -3,13 +3,14 @@ package com.uidroid.uidroid.view;
 import android.view.View;
 
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 public final class ViewComposite {
 
-    private final Map<String, ViewCompositeChild> mapping = new LinkedHashMap<>();
+    private final Map<String, ViewCompositeChild> mapping = new HashMap<>();
+    private final List<ViewCompositeChild> children = new ArrayList<>();
 
     public static class ViewCompositeChild {
         public String key;
@@ -26,11 +27,37 @@ public final class ViewComposite {
 
     @SuppressWarnings("unused")
     public void put(String key, View view, int fallback) {
-        mapping.put(key, new ViewCompositeChild(key, view, fallback));
+        final ViewCompositeChild child = new ViewCompositeChild(key, view, fallback);
+        final ViewCompositeChild previous = mapping.put(key, child);
+
+        if (previous != null) {
+            children.set(children.indexOf(previous), child);
+        } else {
+            children.add(child);
+        }
     }
 
     public List<ViewCompositeChild> getSubViews() {
-        return new ArrayList<>(mapping.values());
+        return new ArrayList<>(children);
+    }
+
+    /**
+     * Returns the number of sub-views, to iterate them with getSubViewAt without copying.
+     *
+     * @return int number of sub-views.
+     */
+    public int getSubViewsCount() {
+        return children.size();
+    }
+
+    /**
+     * Returns the sub-view at the provided position, in insertion order.
+     *
+     * @param position int position of the sub-view.
+     * @return ViewCompositeChild sub-view.
+     */
+    public ViewCompositeChild getSubViewAt(int position) {
+        return children.get(position);
     }
 
     public ViewCompositeChild getSubView(String key) {
@@ -0,0 +1,44 @@
+package com.uidroid.uidroid;
+
+import org.junit.Assume;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Helper for tests asserting that a hot path doesn't allocate, based on the per-thread allocation
+ * counter of HotSpot. Tests using it are skipped on JVMs that don't expose the counter.
+ */
+public final class Allocations {
+
+    private Allocations() {
+
+    }
+
+    /**
+     * Returns the bytes allocated by the current thread while running the provided runnable.
+     *
+     * @param runnable Runnable to measure.
+     * @return allocated bytes.
+     */
+    public static long measure(Runnable runnable) {
+        final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+
+        final com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+
+        Assume.assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        final long threadId = Thread.currentThread().getId();
+
+        // Warms up the counter itself
+        threadBean.getThreadAllocatedBytes(threadId);
+
+        final long before = threadBean.getThreadAllocatedBytes(threadId);
+        runnable.run();
+
+        return threadBean.getThreadAllocatedBytes(threadId) - before;
+    }
+
+}
@@ -0,0 +1,136 @@
+package com.uidroid.uidroid;
+
+import com.uidroid.uidroid.model.ViewConfiguration;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BindingQueueTest {
+
+    private static List<ViewConfiguration> configurations(int count) {
+        final List<ViewConfiguration> configurations = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            configurations.add(new ViewConfiguration("id" + i, null, null));
+        }
+
+        return configurations;
+    }
+
+    @Test
+    public void pollsInInsertionOrder() {
+        final BindingQueue queue = new BindingQueue();
+        final List<ViewConfiguration> configurations = configurations(100);
+
+        for (ViewConfiguration configuration : configurations) {
+            queue.add(null, configuration);
+        }
+
+        for (ViewConfiguration configuration : configurations) {
+            assertSame(configuration, queue.configuration());
+            queue.poll();
+        }
+
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void keepsOrderWhenGrowingWhilePolling() {
+        final BindingQueue queue = new BindingQueue();
+        final List<ViewConfiguration> configurations = configurations(200);
+
+        int added = 0;
+        int polled = 0;
+
+        // Breadth-first like usage: every poll adds two pairs, compacting and growing the arrays
+        queue.add(null, configurations.get(added++));
+
+        while (!queue.isEmpty()) {
+            assertSame(configurations.get(polled++), queue.configuration());
+            queue.poll();
+
+            for (int i = 0; i < 2 && added < configurations.size(); i++) {
+                queue.add(null, configurations.get(added++));
+            }
+        }
+
+        assertEquals(configurations.size(), polled);
+    }
+
+    @Test
+    public void addsChildrenOfConfiguration() {
+        final BindingQueue queue = new BindingQueue();
+        final ViewConfiguration parent = new ViewConfiguration("parent", null, null);
+        final List<ViewConfiguration> children = configurations(3);
+
+        for (int i = 0; i < children.size(); i++) {
+            parent.addChildConfiguration("key" + i, children.get(i));
+        }
+
+        queue.addChildren(parent);
+
+        for (ViewConfiguration child : children) {
+            assertNull(queue.view());
+            assertSame(child, queue.configuration());
+            queue.poll();
+        }
+
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void clearEmptiesQueue() {
+        final BindingQueue queue = new BindingQueue();
+
+        for (ViewConfiguration configuration : configurations(20)) {
+            queue.add(null, configuration);
+        }
+
+        queue.poll();
+        queue.clear();
+
+        assertTrue(queue.isEmpty());
+
+        final ViewConfiguration configuration = new ViewConfiguration("after", null, null);
+        queue.add(null, configuration);
+
+        assertSame(configuration, queue.configuration());
+    }
+
+    @Test
+    public void reusedQueueDoesNotAllocate() {
+        final BindingQueue queue = new BindingQueue();
+        final List<ViewConfiguration> configurations = configurations(64);
+
+        final Runnable traversal = () -> {
+            for (int i = 0; i < configurations.size(); i++) {
+                queue.add(null, configurations.get(i));
+            }
+
+            while (!queue.isEmpty()) {
+                queue.poll();
+            }
+
+            queue.clear();
+        };
+
+        // The first traversals grow the arrays, the following ones reuse them
+        for (int i = 0; i < 1000; i++) {
+            traversal.run();
+        }
+
+        assertEquals(0, Allocations.measure(() -> {
+            for (int i = 0; i < 1000; i++) {
+                traversal.run();
+            }
+        }));
+    }
+
+}
@@ -0,0 +1,129 @@
+package com.uidroid.uidroid;
+
+import android.view.View;
+
+import com.uidroid.uidroid.binder.IViewBinder;
+import com.uidroid.uidroid.handler.ClickHandler;
+import com.uidroid.uidroid.model.ViewConfiguration;
+import com.uidroid.uidroid.view.ViewComposite;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs on the stubbed android.jar of the unit tests, with default values returned by the stubbed
+ * methods: the test views keep their keyed tag themselves, as the stubbed View.getTag(int) would
+ * always return null.
+ */
+public class DatabindingContextTest {
+
+    private static final class TestView extends View {
+
+        private int tagKey;
+        private Object tag;
+
+        TestView() {
+            super(null);
+        }
+
+        @Override
+        public Object getTag(int key) {
+            return tag != null && tagKey == key ? tag : null;
+        }
+
+        @Override
+        public void setTag(int key, Object tag) {
+            this.tagKey = key;
+            this.tag = tag;
+        }
+
+    }
+
+    private static final class CountingBinder implements IViewBinder {
+
+        private int bound;
+        private int unbound;
+
+        @Override
+        public void bindView(DatabindingContext databindingContext, ViewConfiguration configuration, View view) {
+            bound++;
+        }
+
+        @Override
+        public void unbindView(DatabindingContext databindingContext, ViewConfiguration configuration, View view) {
+            unbound++;
+        }
+
+        @Override
+        public void removeView(DatabindingContext databindingContext, ViewConfiguration configuration) {
+
+        }
+
+    }
+
+    private final CountingBinder binder = new CountingBinder();
+    private final TestView view = new TestView();
+    private final TestView childView = new TestView();
+
+    private final DatabindingContext context = new DatabindingContext(
+            null,
+            new ClickHandler(),
+            type -> binder,
+            null,
+            object -> {
+                if (object != view) {
+                    return null;
+                }
+
+                final ViewComposite composite = new ViewComposite();
+                composite.put("child", childView, View.GONE);
+                return composite;
+            },
+            null) { };
+
+    private static ViewConfiguration tree() {
+        final ViewConfiguration root = new ViewConfiguration("root", "view", null);
+
+        root.setAction(() -> { });
+        root.addChildConfiguration("child", new ViewConfiguration("child", "view", null));
+
+        return root;
+    }
+
+    @Test
+    public void bindUnbindRoundTripDoesNotAllocate() {
+        final ViewConfiguration root = tree();
+
+        final Runnable roundTrip = () -> {
+            context.bindViewToConfiguration(view, root);
+            context.unbindView(view, root);
+        };
+
+        // The first round trips create the entries, tags, composites and pooled queues
+        for (int i = 0; i < 1000; i++) {
+            roundTrip.run();
+        }
+
+        assertEquals(0, Allocations.measure(() -> {
+            for (int i = 0; i < 1000; i++) {
+                roundTrip.run();
+            }
+        }));
+
+        assertEquals(4000, binder.bound);
+        assertEquals(4000, binder.unbound);
+    }
+
+    @Test
+    public void rebindingRootDoesNotGrowHistory() {
+        final ViewConfiguration root = tree();
+
+        for (int i = 0; i < 10; i++) {
+            context.bindViewToConfiguration(view, root);
+        }
+
+        assertEquals(1, context.getRootViewConfigurationsHistory().size());
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.uidroid.uidroid;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Helper for the benchmarks, which run from their main methods and not as tests: runs an
+ * operation in a loop on several threads started together, and returns the operations per second.
+ */
+public final class Throughput {
+
+    /**
+     * An operation of the measured workload.
+     */
+    public interface Operation {
+
+        /**
+         * Runs the operation once.
+         *
+         * @param random Random of the calling thread, seeded with the thread index.
+         * @throws Exception if the operation fails, which stops the measure.
+         */
+        void run(Random random) throws Exception;
+
+    }
+
+    private Throughput() {
+
+    }
+
+    /**
+     * Runs the provided operation on the given number of threads for the given time.
+     *
+     * @param threads int number of threads.
+     * @param millis long duration of the measure.
+     * @param operation Operation to run.
+     * @return operations per second, for all the threads.
+     * @throws Exception if an operation failed.
+     */
+    public static double measure(int threads, long millis, Operation operation) throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final Future<?>[] futures = new Future<?>[threads];
+
+        try {
+            for (int t = 0; t < threads; t++) {
+                final long seed = t;
+
+                futures[t] = executor.submit(() -> {
+                    final Random random = new Random(seed);
+                    long operations = 0;
+
+                    start.await();
+
+                    while (running.get()) {
+                        operation.run(random);
+                        operations++;
+                    }
+
+                    return operations;
+                });
+            }
+
+            final long begin = System.nanoTime();
+            start.countDown();
+            Thread.sleep(millis);
+            running.set(false);
+
+            long operations = 0;
+
+            for (Future<?> future : futures) {
+                operations += (Long) future.get(60, TimeUnit.SECONDS);
+            }
+
+            return operations * 1e9 / (System.nanoTime() - begin);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
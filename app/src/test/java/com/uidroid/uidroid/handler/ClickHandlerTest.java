@@ -0,0 +1,88 @@
+package com.uidroid.uidroid.handler;
+
+import com.uidroid.uidroid.Allocations;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class ClickHandlerTest {
+
+    @Test
+    public void executesSubscribedActions() {
+        final ClickHandler handler = new ClickHandler();
+        final AtomicInteger clicks = new AtomicInteger();
+        final Integer id = 1;
+
+        handler.subscribeAction(id, clicks::incrementAndGet);
+        handler.subscribeAction(id, clicks::incrementAndGet);
+        handler.executeActions(id);
+
+        assertEquals(2, clicks.get());
+    }
+
+    @Test
+    public void unsubscribedActionsAreNotExecuted() {
+        final ClickHandler handler = new ClickHandler();
+        final AtomicInteger clicks = new AtomicInteger();
+        final Integer id = 1;
+
+        handler.subscribeAction(id, clicks::incrementAndGet);
+        handler.unsubscribeActions(id);
+        handler.executeActions(id);
+
+        assertEquals(0, clicks.get());
+
+        handler.subscribeAction(id, clicks::incrementAndGet);
+        handler.removeActions(id);
+        handler.executeActions(id);
+
+        assertEquals(0, clicks.get());
+    }
+
+    @Test
+    public void ignoresNullIds() {
+        final ClickHandler handler = new ClickHandler();
+
+        handler.subscribeAction(null, () -> {
+            throw new AssertionError();
+        });
+        handler.executeActions(null);
+        handler.unsubscribeActions(null);
+        handler.removeActions(null);
+    }
+
+    @Test
+    public void rebindDoesNotAllocate() {
+        final ClickHandler handler = new ClickHandler();
+        final IViewAction action = () -> {
+
+        };
+        final Integer[] ids = new Integer[64];
+
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = i;
+        }
+
+        // A RecyclerView rebind: the recycled views are unbound and bound again with their ids
+        final Runnable rebind = () -> {
+            for (Integer id : ids) {
+                handler.unsubscribeActions(id);
+                handler.subscribeAction(id, action);
+            }
+        };
+
+        for (int i = 0; i < 1000; i++) {
+            rebind.run();
+        }
+
+        assertEquals(0, Allocations.measure(() -> {
+            for (int i = 0; i < 1000; i++) {
+                rebind.run();
+            }
+        }));
+    }
+
+}
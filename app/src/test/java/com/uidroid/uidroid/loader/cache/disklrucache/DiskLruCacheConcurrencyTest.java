@@ -0,0 +1,208 @@
+package com.uidroid.uidroid.loader.cache.disklrucache;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Covers the reads done without the cache lock: a snapshot never mixes the files of two edits, and
+ * the buffered reads promote their entries in the LRU queue once drained.
+ */
+public class DiskLruCacheConcurrencyTest {
+
+    private static final int READERS = 4;
+    private static final int GENERATIONS = 500;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void snapshotsNeverMixEdits() throws Exception {
+        final DiskLruCache cache = DiskLruCache.open(folder.newFolder(), 1, 2, Long.MAX_VALUE);
+        put(cache, "key", "0", "0");
+
+        final ExecutorService executor = Executors.newFixedThreadPool(READERS);
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final List<Future<Integer>> readers = new ArrayList<>();
+
+        try {
+            for (int t = 0; t < READERS; t++) {
+                readers.add(executor.submit(() -> {
+                    int reads = 0;
+
+                    start.await();
+
+                    while (running.get()) {
+                        final DiskLruCache.Snapshot snapshot = cache.get("key");
+
+                        if (snapshot == null) {
+                            continue; // Removed meanwhile
+                        }
+
+                        try {
+                            final String first = snapshot.getString(0);
+                            final String second = snapshot.getString(1);
+
+                            assertEquals(first, second);
+                            assertEquals(first.length(), snapshot.getLength(0));
+                            assertEquals(second.length(), snapshot.getLength(1));
+                        } finally {
+                            snapshot.close();
+                        }
+
+                        reads++;
+                    }
+
+                    return reads;
+                }));
+            }
+
+            start.countDown();
+
+            for (int generation = 1; generation <= GENERATIONS; generation++) {
+                // Values of different lengths, so a mix is visible in the lengths too
+                final String value = generation % 3 == 0 ? "" + generation : "value" + generation;
+
+                if (generation % 50 == 0) {
+                    cache.remove("key");
+                }
+
+                put(cache, "key", value, value);
+            }
+
+            running.set(false);
+
+            int reads = 0;
+
+            for (Future<Integer> reader : readers) {
+                reads += reader.get(60, TimeUnit.SECONDS);
+            }
+
+            assertTrue(reads > 0);
+        } finally {
+            running.set(false);
+            executor.shutdownNow();
+            cache.close();
+        }
+    }
+
+    @Test
+    public void bufferedReadsPromoteEntries() throws IOException {
+        final DiskLruCache cache = DiskLruCache.open(folder.newFolder(), 1, 1, 3);
+        put(cache, "a", "a");
+        put(cache, "b", "b");
+        put(cache, "c", "c");
+
+        // Reads without the lock, enough to schedule a drain by the cleanup thread
+        for (int i = 0; i < 100; i++) {
+            cache.get("a").close();
+        }
+
+        put(cache, "d", "d");
+        cache.flush();
+
+        assertTrue(cache.contains("a"));
+        assertFalse(cache.contains("b"));
+        assertTrue(cache.contains("c"));
+        assertTrue(cache.contains("d"));
+        cache.close();
+    }
+
+    @Test
+    public void drainSkipsEntriesRemovedAfterTheirRead() throws IOException {
+        final File directory = folder.newFolder();
+        final DiskLruCache cache = DiskLruCache.open(directory, 1, 1, Long.MAX_VALUE);
+        put(cache, "a", "a");
+
+        cache.get("a").close();
+        cache.remove("a");
+        cache.flush();
+        cache.close();
+
+        final DiskLruCache reopened = DiskLruCache.open(directory, 1, 1, Long.MAX_VALUE);
+        assertNull(reopened.get("a"));
+        assertEquals(0, reopened.size());
+        reopened.close();
+    }
+
+    @Test
+    public void readsFallBackToTheLockWhenAFileIsMissing() throws IOException {
+        final File directory = folder.newFolder();
+        final DiskLruCache cache = DiskLruCache.open(directory, 1, 2, Long.MAX_VALUE);
+        put(cache, "a", "a", "b");
+
+        assertTrue(new File(directory, "a.1").delete());
+
+        assertNull(cache.get("a"));
+
+        put(cache, "a", "c", "d");
+
+        final DiskLruCache.Snapshot snapshot = cache.get("a");
+        assertNotNull(snapshot);
+        assertEquals("c", snapshot.getString(0));
+        assertEquals("d", snapshot.getString(1));
+        snapshot.close();
+        cache.close();
+    }
+
+    @Test
+    public void editsOfADeletedCacheAreAborted() throws IOException {
+        final File directory = folder.newFolder();
+        final DiskLruCache cache = DiskLruCache.open(directory, 1, 1, Long.MAX_VALUE);
+        put(cache, "a", "a");
+        final DiskLruCache.Editor editor = cache.edit("b");
+
+        cache.delete();
+
+        try {
+            editor.set(0, "b");
+            fail();
+        } catch (IllegalStateException expected) {
+            // The edit was aborted by the deletion
+        }
+
+        editor.abortUnlessCommitted();
+
+        try {
+            cache.get("a");
+            fail();
+        } catch (IllegalStateException expected) {
+            // Closed
+        }
+
+        final DiskLruCache reopened = DiskLruCache.open(directory, 1, 1, Long.MAX_VALUE);
+        assertNull(reopened.get("a"));
+        assertNull(reopened.get("b"));
+        reopened.close();
+    }
+
+    private static void put(DiskLruCache cache, String key, String... values) throws IOException {
+        final DiskLruCache.Editor editor = cache.edit(key);
+
+        for (int i = 0; i < values.length; i++) {
+            editor.set(i, values[i]);
+        }
+
+        editor.commit();
+    }
+
+}
@@ -0,0 +1,263 @@
+package com.uidroid.uidroid.loader.cache.disklrucache;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Covers the BINARY journal: reopening a cache from it, migrating a TEXT journal to it and
+ * recovering from a truncated or corrupt tail.
+ */
+public class DiskLruCacheJournalTest {
+
+    private static final DiskLruCache.JournalFormat BINARY = DiskLruCache.JournalFormat.BINARY;
+    private static final DiskLruCache.JournalFormat TEXT = DiskLruCache.JournalFormat.TEXT;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void reopensFromTheBinaryJournal() throws Exception {
+        final File directory = folder.newFolder();
+        DiskLruCache cache = open(directory, BINARY, Long.MAX_VALUE);
+        put(cache, "a", "a", "aa");
+        put(cache, "b", "b", "bb");
+        put(cache, "c", "c", "cc");
+        put(cache, "b", "bbb", "bbbb");
+        cache.remove("c");
+        cache.get("a").close();
+        cache.close();
+
+        assertTrue(new File(directory, DiskLruCache.BINARY_JOURNAL_FILE).exists());
+        assertFalse(new File(directory, DiskLruCache.JOURNAL_FILE).exists());
+
+        cache = open(directory, BINARY, Long.MAX_VALUE);
+        assertValues(cache, "a", "a", "aa");
+        assertValues(cache, "b", "bbb", "bbbb");
+        assertNull(cache.get("c"));
+        assertEquals(10, cache.size());
+        cache.close();
+    }
+
+    @Test
+    public void binaryJournalKeepsTheLruOrder() throws Exception {
+        final File directory = folder.newFolder();
+        DiskLruCache cache = open(directory, BINARY, Long.MAX_VALUE);
+        put(cache, "a", "a", "a");
+        put(cache, "b", "b", "b");
+        put(cache, "c", "c", "c");
+        cache.get("a").close();
+        cache.close();
+
+        // Adding a fourth entry evicts the least recently used one, b
+        cache = open(directory, BINARY, 6);
+        put(cache, "d", "d", "d");
+        cache.flush();
+        assertTrue(cache.contains("a"));
+        assertFalse(cache.contains("b"));
+        assertTrue(cache.contains("c"));
+        assertTrue(cache.contains("d"));
+        cache.close();
+    }
+
+    @Test
+    public void opensFromAnInterruptedThread() throws Exception {
+        final File directory = folder.newFolder();
+        DiskLruCache cache = open(directory, BINARY, Long.MAX_VALUE);
+        put(cache, "a", "a", "aa");
+        put(cache, "b", "b", "bb");
+        cache.close();
+
+        // A cancelled request may be the thread opening the cache
+        Thread.currentThread().interrupt();
+
+        try {
+            cache = open(directory, BINARY, Long.MAX_VALUE);
+        } finally {
+            assertTrue(Thread.interrupted());
+        }
+
+        assertValues(cache, "a", "a", "aa");
+        assertValues(cache, "b", "b", "bb");
+        cache.close();
+    }
+
+    @Test
+    public void migratesTheTextJournal() throws Exception {
+        final File directory = folder.newFolder();
+        DiskLruCache cache = open(directory, TEXT, Long.MAX_VALUE);
+        put(cache, "a", "a", "aa");
+        put(cache, "b", "b", "bb");
+        cache.remove("b");
+        cache.close();
+
+        final File journal = new File(directory, DiskLruCache.JOURNAL_FILE);
+        final File binaryJournal = new File(directory, DiskLruCache.BINARY_JOURNAL_FILE);
+        assertTrue(journal.exists());
+        assertFalse(binaryJournal.exists());
+
+        cache = open(directory, BINARY, Long.MAX_VALUE);
+        assertValues(cache, "a", "a", "aa");
+
+        // The migration runs on the single cleanup thread, so it's done once a later task runs
+        cache.executorService.submit(() -> null).get();
+        assertTrue(binaryJournal.exists());
+        assertFalse(journal.exists());
+
+        put(cache, "c", "c", "cc");
+        cache.close();
+
+        cache = open(directory, BINARY, Long.MAX_VALUE);
+        assertValues(cache, "a", "a", "aa");
+        assertNull(cache.get("b"));
+        assertValues(cache, "c", "c", "cc");
+        cache.close();
+    }
+
+    @Test
+    public void dropsATruncatedRecord() throws Exception {
+        final File directory = folder.newFolder();
+        DiskLruCache cache = open(directory, BINARY, Long.MAX_VALUE);
+        put(cache, "a", "a", "aa");
+        put(cache, "b", "b", "bb");
+        cache.close();
+
+        // Cuts the lengths of the CLEAN record of b: only its DIRTY record remains
+        final File binaryJournal = new File(directory, DiskLruCache.BINARY_JOURNAL_FILE);
+        truncate(binaryJournal, 5);
+
+        cache = open(directory, BINARY, Long.MAX_VALUE);
+        assertValues(cache, "a", "a", "aa");
+        assertNull(cache.get("b"));
+        assertFalse(new File(directory, "b.0").exists());
+        assertEquals(3, cache.size());
+
+        // The journal was rebuilt, so records appended now are read back
+        put(cache, "c", "c", "cc");
+        cache.close();
+
+        cache = open(directory, BINARY, Long.MAX_VALUE);
+        assertValues(cache, "a", "a", "aa");
+        assertValues(cache, "c", "c", "cc");
+        cache.close();
+    }
+
+    @Test
+    public void dropsATruncatedRecordHeader() throws Exception {
+        final File directory = folder.newFolder();
+        DiskLruCache cache = open(directory, BINARY, Long.MAX_VALUE);
+        put(cache, "a", "a", "aa");
+        cache.close();
+
+        // A lone opcode byte
+        append(new File(directory, DiskLruCache.BINARY_JOURNAL_FILE), 1);
+
+        cache = open(directory, BINARY, Long.MAX_VALUE);
+        assertValues(cache, "a", "a", "aa");
+        put(cache, "b", "b", "bb");
+        cache.close();
+
+        cache = open(directory, BINARY, Long.MAX_VALUE);
+        assertValues(cache, "a", "a", "aa");
+        assertValues(cache, "b", "b", "bb");
+        cache.close();
+    }
+
+    @Test
+    public void resetsTheCacheOnACorruptRecord() throws Exception {
+        final File directory = folder.newFolder();
+        DiskLruCache cache = open(directory, BINARY, Long.MAX_VALUE);
+        put(cache, "a", "a", "aa");
+        cache.close();
+
+        // An unknown opcode, with a complete record
+        append(new File(directory, DiskLruCache.BINARY_JOURNAL_FILE), 0x7f, 1, 'x');
+
+        cache = open(directory, BINARY, Long.MAX_VALUE);
+        assertNull(cache.get("a"));
+        assertFalse(new File(directory, "a.0").exists());
+        assertEquals(0, cache.size());
+
+        put(cache, "b", "b", "bb");
+        cache.close();
+
+        cache = open(directory, BINARY, Long.MAX_VALUE);
+        assertValues(cache, "b", "b", "bb");
+        cache.close();
+    }
+
+    @Test
+    public void resetsTheCacheOnAMismatchedHeader() throws Exception {
+        final File directory = folder.newFolder();
+        DiskLruCache cache = open(directory, BINARY, Long.MAX_VALUE);
+        put(cache, "a", "a", "aa");
+        cache.close();
+
+        cache = DiskLruCache.open(directory, 2, 2, Long.MAX_VALUE, 0, 0, BINARY);
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+        cache.close();
+    }
+
+    private static DiskLruCache open(File directory, DiskLruCache.JournalFormat format, long maxSize)
+            throws IOException {
+        return DiskLruCache.open(directory, 1, 2, maxSize, 0, 0, format);
+    }
+
+    private static void put(DiskLruCache cache, String key, String... values) throws IOException {
+        final DiskLruCache.Editor editor = cache.edit(key);
+
+        for (int i = 0; i < values.length; i++) {
+            editor.set(i, values[i]);
+        }
+
+        editor.commit();
+    }
+
+    private static void assertValues(DiskLruCache cache, String key, String... values)
+            throws IOException {
+        final DiskLruCache.Snapshot snapshot = cache.get(key);
+
+        try {
+            for (int i = 0; i < values.length; i++) {
+                assertEquals(values[i], snapshot.getString(i));
+                assertEquals(values[i].length(), snapshot.getLength(i));
+            }
+        } finally {
+            snapshot.close();
+        }
+    }
+
+    private static void truncate(File file, int bytes) throws IOException {
+        final RandomAccessFile out = new RandomAccessFile(file, "rw");
+
+        try {
+            out.setLength(out.length() - bytes);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void append(File file, int... bytes) throws IOException {
+        final FileOutputStream out = new FileOutputStream(file, true);
+
+        try {
+            for (int b : bytes) {
+                out.write(b);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.uidroid.uidroid.loader.cache.disklrucache;
+
+import com.uidroid.uidroid.Throughput;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Measures the throughput of DiskLruCache reads with 1, 4 and 8 threads, on a skewed key set.
+ * get, which opens the files without the cache lock and buffers the LRU promotion, is compared
+ * with getLocked, the read path it replaced: it holds the cache lock while opening the files and
+ * journals every read under it. It's a benchmark, not a test: run main.
+ */
+public class DiskLruCacheReadBenchmark {
+
+    private static final int KEYS = 512;
+    private static final int[] THREADS = {1, 4, 8};
+
+    private static DiskLruCache open(File directory) throws IOException {
+        final DiskLruCache cache = DiskLruCache.open(directory, 1, 1, Long.MAX_VALUE);
+        final byte[] value = new byte[4096];
+
+        for (int i = 0; i < KEYS; i++) {
+            final DiskLruCache.Editor editor = cache.edit("key" + i);
+            editor.newOutputStream(0).write(value);
+            editor.commit();
+        }
+
+        return cache;
+    }
+
+    private static String key(String[] keys, Random random) {
+        // Squaring skews the reads toward the first keys
+        final double r = random.nextDouble();
+        return keys[(int) (r * r * KEYS)];
+    }
+
+    private static void runAll(File directory, long millis) throws Exception {
+        final DiskLruCache cache = open(directory);
+        final String[] keys = new String[KEYS];
+
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = "key" + i;
+        }
+
+        try {
+            for (int threads : THREADS) {
+                final double lockFree = Throughput.measure(threads, millis,
+                        random -> cache.get(key(keys, random)).close());
+                final double locked = Throughput.measure(threads, millis,
+                        random -> cache.getLocked(key(keys, random)).close());
+
+                System.out.printf("threads=%d get=%.0f reads/s getLocked=%.0f reads/s%n",
+                        threads, lockFree, locked);
+            }
+        } finally {
+            cache.delete();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        final File directory = Files.createTempDirectory("disklrucache").toFile();
+
+        try {
+            // Warm up, then measure
+            runAll(directory, 500);
+            runAll(directory, 2000);
+        } finally {
+            directory.delete();
+        }
+    }
+
+}
@@ -0,0 +1,212 @@
+package com.uidroid.uidroid.loader.cache.disklrucache;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Reopens group commit caches whose buffered journal records were lost, by copying the directory
+ * of an open cache before the records are flushed.
+ */
+public class DiskLruCacheRecoveryTest {
+
+    private static final long NEVER = 60_000;
+    private static final int BATCH = 1_000;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void adoptsEntriesCommittedBeforeTheJournalWasFlushed() throws IOException {
+        File directory = folder.newFolder("cache");
+        DiskLruCache cache = DiskLruCache.open(directory, 1, 2, Long.MAX_VALUE, NEVER, BATCH);
+
+        for (int i = 0; i < 10; i++) {
+            put(cache, "key" + i, "a" + i, "bb" + i);
+        }
+
+        File crashed = crash(directory);
+        cache.close();
+
+        DiskLruCache reopened = DiskLruCache.open(crashed, 1, 2, Long.MAX_VALUE, NEVER, BATCH);
+        long size = 0;
+        for (int i = 0; i < 10; i++) {
+            DiskLruCache.Snapshot snapshot = reopened.get("key" + i);
+            assertNotNull("key" + i, snapshot);
+            assertEquals("a" + i, snapshot.getString(0));
+            assertEquals("bb" + i, snapshot.getString(1));
+            size += snapshot.getLength(0) + snapshot.getLength(1);
+            snapshot.close();
+        }
+        assertEquals(size, reopened.size());
+        reopened.close();
+
+        // The rebuilt journal records the adopted entries.
+        reopened = DiskLruCache.open(crashed, 1, 2, Long.MAX_VALUE);
+        assertTrue(reopened.contains("key9"));
+        reopened.close();
+    }
+
+    @Test
+    public void dropsEntriesWhoseLastRecordIsDirty() throws IOException {
+        File directory = folder.newFolder("cache");
+        DiskLruCache cache = DiskLruCache.open(directory, 1, 1, Long.MAX_VALUE, NEVER, BATCH);
+
+        DiskLruCache.Editor editor = cache.edit("key");
+        editor.set(0, "value");
+        cache.flush(); // Only the DIRTY record reaches the journal.
+        editor.commit();
+
+        File crashed = crash(directory);
+        cache.close();
+
+        DiskLruCache reopened = DiskLruCache.open(crashed, 1, 1, Long.MAX_VALUE, NEVER, BATCH);
+        assertNull(reopened.get("key"));
+        assertFalse(new File(crashed, "key.0").exists());
+        reopened.close();
+    }
+
+    @Test
+    public void dropsAnEditCommittedHalfwayAfterItsDirtyRecord() throws IOException {
+        File directory = folder.newFolder("cache");
+        DiskLruCache cache = DiskLruCache.open(directory, 1, 2, Long.MAX_VALUE, NEVER, BATCH);
+        put(cache, "key", "old0", "old1");
+
+        DiskLruCache.Editor editor = cache.edit("key");
+        editor.set(0, "new0");
+        editor.set(1, "new1");
+        cache.flush(); // The DIRTY record reaches the journal.
+
+        // Crash while the commit renames the files: the first one is renamed, not the second.
+        File crashed = crash(directory);
+        editor.abort();
+        cache.close();
+        assertTrue(new File(crashed, "key.0.tmp").renameTo(new File(crashed, "key.0")));
+
+        assertDropped(crashed, "key");
+    }
+
+    @Test
+    public void dropsAnEditCommittedHalfwayBeforeItsDirtyRecord() throws IOException {
+        File directory = folder.newFolder("cache");
+        DiskLruCache cache = DiskLruCache.open(directory, 1, 2, Long.MAX_VALUE, NEVER, BATCH);
+        put(cache, "key", "old0", "old1");
+        cache.flush();
+
+        // The DIRTY record of the edit is lost with the crash.
+        DiskLruCache.Editor editor = cache.edit("key");
+        editor.set(0, "new0");
+        editor.set(1, "new1");
+
+        File crashed = crash(directory);
+        editor.abort();
+        cache.close();
+        assertTrue(new File(crashed, "key.0.tmp").renameTo(new File(crashed, "key.0")));
+
+        assertDropped(crashed, "key");
+    }
+
+    @Test
+    public void dropsAnOrphanEditCommittedHalfway() throws IOException {
+        File directory = folder.newFolder("cache");
+        DiskLruCache cache = DiskLruCache.open(directory, 1, 2, Long.MAX_VALUE, NEVER, BATCH);
+        cache.flush();
+        cache.close();
+
+        // No record of the entry, and the crash hit while renaming its files.
+        write(new File(directory, "key.0"), "new0");
+        write(new File(directory, "key.1"), "old1");
+        write(new File(directory, "key.1.tmp"), "new1");
+
+        assertDropped(directory, "key");
+    }
+
+    private static void assertDropped(File directory, String key) throws IOException {
+        DiskLruCache reopened = DiskLruCache.open(directory, 1, 2, Long.MAX_VALUE, NEVER, BATCH);
+        assertNull(reopened.get(key));
+        assertFalse(new File(directory, key + ".0").exists());
+        assertFalse(new File(directory, key + ".1").exists());
+        assertFalse(new File(directory, key + ".1.tmp").exists());
+        assertEquals(0, reopened.size());
+        reopened.close();
+    }
+
+    @Test
+    public void deletesIncompleteAndTemporaryFiles() throws IOException {
+        File directory = folder.newFolder("cache");
+        DiskLruCache cache = DiskLruCache.open(directory, 1, 2, Long.MAX_VALUE, NEVER, BATCH);
+        put(cache, "kept", "a", "b");
+        cache.flush();
+        cache.close();
+
+        File partial = new File(directory, "partial.0");
+        File dirty = new File(directory, "dirty.0.tmp");
+        File unknown = new File(directory, "other.7");
+        write(partial, "a");
+        write(dirty, "a");
+        write(unknown, "a");
+
+        DiskLruCache reopened = DiskLruCache.open(directory, 1, 2, Long.MAX_VALUE, NEVER, BATCH);
+        assertTrue(reopened.contains("kept"));
+        assertNull(reopened.get("partial"));
+        assertFalse(partial.exists());
+        assertFalse(dirty.exists());
+        assertFalse(unknown.exists());
+        assertEquals(2, reopened.size());
+        reopened.close();
+    }
+
+    @Test
+    public void dropsEntriesWhoseFilesWereRemoved() throws IOException {
+        File directory = folder.newFolder("cache");
+        DiskLruCache cache = DiskLruCache.open(directory, 1, 1, Long.MAX_VALUE, NEVER, BATCH);
+        put(cache, "removed", "value");
+        cache.flush();
+        cache.remove("removed"); // The REMOVE record is lost.
+
+        File crashed = crash(directory);
+        cache.close();
+
+        DiskLruCache reopened = DiskLruCache.open(crashed, 1, 1, Long.MAX_VALUE, NEVER, BATCH);
+        assertFalse(reopened.contains("removed"));
+        assertEquals(0, reopened.size());
+        reopened.close();
+    }
+
+    private static void put(DiskLruCache cache, String key, String... values) throws IOException {
+        DiskLruCache.Editor editor = cache.edit(key);
+        for (int i = 0; i < values.length; i++) {
+            editor.set(i, values[i]);
+        }
+        editor.commit();
+    }
+
+    private static void write(File file, String value) throws IOException {
+        Files.write(file.toPath(), value.getBytes("UTF-8"));
+    }
+
+    /**
+     * Copies the files of {@code directory} as a crash would leave them.
+     */
+    private File crash(File directory) throws IOException {
+        File copy = folder.newFolder();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Files.copy(file.toPath(), new File(copy, file.getName()).toPath());
+            }
+        }
+        return copy;
+    }
+
+}
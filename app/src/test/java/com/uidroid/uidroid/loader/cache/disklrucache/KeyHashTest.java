@@ -0,0 +1,65 @@
+package com.uidroid.uidroid.loader.cache.disklrucache;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks KeyHash against MurmurHash3_x64_128 with seed 0, written as h1 then h2 in hex. The
+ * expected values come from Guava's Hashing.murmur3_128(0), whose bytes are h1 then h2 in little
+ * endian order, and include the published vector of "The quick brown fox jumps over the lazy dog".
+ * The tail lengths 0, 1, 8, 9 and 15 cover each branch of the tail mixing, and the longer inputs
+ * cover one and several 16 byte blocks.
+ */
+public class KeyHashTest {
+
+    private static final String LONG_URL = "https://images.example.com/catalog/products/2024/"
+            + "summer-collection/full-size/very-long-product-name-with-many-words-0123456789.jpg";
+
+    private static void assertLegalKey(String key) {
+        assertTrue(key, DiskLruCache.LEGAL_KEY_PATTERN.matcher(key).matches());
+    }
+
+    @Test
+    public void matchesReferenceVectors() {
+        assertEquals("00000000000000000000000000000000", KeyHash.hash(""));
+        assertEquals("85555565f6597889e6b53a48510e895a", KeyHash.hash("a"));
+        assertEquals("cc8a0ab037ef8c0248890d60eb6940a1", KeyHash.hash("abcdefgh"));
+        assertEquals("0547c0cff13c796479b53df5b741e033", KeyHash.hash("abcdefghi"));
+        assertEquals("8abe2451890c2ffb6a548c2d9c962a61", KeyHash.hash("abcdefghijklmno"));
+        assertEquals("c4ca3ca3224cb7234333d695b331eb1a", KeyHash.hash("abcdefghijklmnop"));
+        assertEquals("5d9aa319c0cda20e4ee6059de98d9b07",
+                KeyHash.hash("abcdefghijklmnopqrstuvwxyz0123456789ABCDEFGHIJKLM"));
+        assertEquals("e34bbc7bbc071b6c7a433ca9c49a9347",
+                KeyHash.hash("The quick brown fox jumps over the lazy dog"));
+    }
+
+    @Test
+    public void hashesUtf8BytesAboveAscii() {
+        // 15 bytes, the last 7 in the second half of the tail and mostly above 0x7f
+        assertEquals("f8934abed7e6eb9474fa1333c421a5e5", KeyHash.hash("abcdefgh\u00e9\u00e9\u00e9x"));
+        assertEquals("3086af12096a3e0648e0a53cb0a360e0",
+                KeyHash.hash("h\u00e9llo w\u00f6rld \u4e16\u754c"));
+    }
+
+    @Test
+    public void mapsUrlsToDistinctLegalKeys() {
+        final String[][] pairs = {
+                {"https://cdn/x/a-1.jpg", "https://cdn/xa1.jpg"},
+                {LONG_URL + "?w=200&h=200", LONG_URL + "?w=400&h=400"},
+                {LONG_URL, LONG_URL + "?"},
+        };
+
+        for (String[] pair : pairs) {
+            final String first = KeyHash.hash(pair[0]);
+            final String second = KeyHash.hash(pair[1]);
+
+            assertLegalKey(first);
+            assertLegalKey(second);
+            assertNotEquals(first, second);
+        }
+    }
+
+}
@@ -0,0 +1,150 @@
+package com.uidroid.uidroid.loader.cache.memorycache;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AdmissionLruCacheTest {
+
+    /**
+     * Cache of sizes, recording the keys removed.
+     */
+    private static final class SizeCache extends AdmissionLruCache<Long> {
+
+        private final List<String> removed = new ArrayList<>();
+
+        private SizeCache(long limit, IEvictionPolicy policy) {
+            super(limit, policy);
+        }
+
+        @Override
+        long sizeOf(Long value) {
+            return value;
+        }
+
+        @Override
+        void onRemoved(String key, Long value) {
+            removed.add(key);
+        }
+
+    }
+
+    /**
+     * Policy with a window of half the cache, admitting only the candidates listed.
+     */
+    private static final class FixedPolicy implements IEvictionPolicy {
+
+        private final List<String> admitted = new ArrayList<>();
+
+        @Override
+        public void recordAccess(String key) {
+
+        }
+
+        @Override
+        public boolean admit(String candidate, String victim) {
+            return admitted.contains(candidate);
+        }
+
+        @Override
+        public float getWindowRatio() {
+            return 0.5f;
+        }
+
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        final SizeCache cache = new SizeCache(30, new LruEvictionPolicy());
+
+        cache.put("a", 10L);
+        cache.put("b", 10L);
+        cache.put("c", 10L);
+        cache.get("a");
+        cache.put("d", 10L);
+
+        assertTrue(cache.contains("a"));
+        assertFalse(cache.contains("b"));
+        assertEquals(30, cache.size());
+        assertEquals("b", cache.removed.get(0));
+    }
+
+    @Test
+    public void replacesValueOfSameKey() {
+        final SizeCache cache = new SizeCache(100, new LruEvictionPolicy());
+
+        cache.put("a", 10L);
+        cache.put("a", 20L);
+
+        assertEquals(Long.valueOf(20), cache.get("a"));
+        assertEquals(20, cache.size());
+        assertEquals(1, cache.removed.size());
+    }
+
+    @Test
+    public void rejectsCandidateNotAdmitted() {
+        final FixedPolicy policy = new FixedPolicy();
+        final SizeCache cache = new SizeCache(40, policy);
+
+        // Window and main area hold 20 each
+        cache.put("a", 10L);
+        cache.put("b", 10L);
+        cache.put("c", 10L);
+        cache.put("d", 10L);
+        // Moves c out of the window, which isn't admitted over a
+        cache.put("e", 10L);
+
+        assertFalse(cache.contains("c"));
+        assertTrue(cache.contains("a"));
+        assertTrue(cache.contains("b"));
+        assertEquals(40, cache.size());
+
+        policy.admitted.add("d");
+        cache.put("f", 10L);
+
+        assertTrue(cache.contains("d"));
+        assertFalse(cache.contains("a"));
+        assertEquals(40, cache.size());
+    }
+
+    @Test
+    public void rejectsValueLargerThanMainArea() {
+        final SizeCache cache = new SizeCache(30, new LruEvictionPolicy());
+
+        cache.put("a", 10L);
+        cache.put("b", 10L);
+        cache.put("c", 40L);
+
+        assertFalse(cache.contains("c"));
+        assertTrue(cache.contains("a"));
+        assertTrue(cache.contains("b"));
+        assertEquals(20, cache.size());
+        assertEquals(Collections.singletonList("c"), cache.removed);
+    }
+
+    @Test
+    public void removesAndClears() {
+        final SizeCache cache = new SizeCache(100, new LruEvictionPolicy());
+
+        cache.put("a", 10L);
+        cache.put("b", 10L);
+
+        assertEquals(Long.valueOf(10), cache.remove("a"));
+        assertNull(cache.remove("a"));
+        assertEquals(10, cache.size());
+
+        cache.clear();
+
+        assertEquals(0, cache.size());
+        assertNull(cache.get("b"));
+        assertEquals(2, cache.removed.size());
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.uidroid.uidroid.loader.cache.memorycache;
+
+/**
+ * Replays a recorded sequence of cache keys through an eviction policy, without decoding any
+ * bitmap, to compare policies on the access pattern of a real screen. Every key is read from a
+ * simulated cache of the provided limit and put into it on a miss, as the image loader does.
+ *
+ * A new policy instance must be provided for every replay, since policies keep access statistics.
+ * It's a test utility: traces are replayed by the policy tests, not by the library.
+ */
+public final class EvictionPolicyReplay {
+
+    private EvictionPolicyReplay() {
+
+    }
+
+    public static final class Result {
+
+        public final long requests;
+        public final long hits;
+        public final long bytesRetained;
+
+        private Result(long requests, long hits, long bytesRetained) {
+            this.requests = requests;
+            this.hits = hits;
+            this.bytesRetained = bytesRetained;
+        }
+
+        public double getHitRatio() {
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+
+        @Override
+        public String toString() {
+            return "requests=" + requests
+                    + " hits=" + hits
+                    + " hitRatio=" + getHitRatio()
+                    + " bytesRetained=" + bytesRetained;
+        }
+
+    }
+
+    /**
+     * Replays the trace through a cache using the provided policy.
+     *
+     * @param policy IEvictionPolicy to evaluate.
+     * @param limit long size of the simulated cache in bytes.
+     * @param keys String[] cache keys in access order.
+     * @param sizes long[] size in bytes of the bitmap of each access.
+     * @return Result with the hit ratio and the bytes retained at the end of the trace.
+     */
+    public static Result replay(IEvictionPolicy policy, long limit, String[] keys, long[] sizes) {
+        if (keys.length != sizes.length) {
+            throw new IllegalArgumentException("Keys and sizes must have the same length");
+        }
+
+        final AdmissionLruCache<Long> cache = new AdmissionLruCache<Long>(limit, policy) {
+            @Override
+            long sizeOf(Long value) {
+                return value;
+            }
+        };
+
+        long hits = 0;
+
+        for (int i = 0; i < keys.length; i++) {
+            if (cache.get(keys[i]) != null) {
+                hits++;
+            } else {
+                cache.put(keys[i], sizes[i]);
+            }
+        }
+
+        return new Result(keys.length, hits, cache.size());
+    }
+
+    /**
+     * Replays the trace through a segmented cache using the provided policy, shared by all the
+     * segments as in SegmentedMemoryImageCache.
+     *
+     * @param policy IEvictionPolicy to evaluate.
+     * @param limit long size of the simulated cache in bytes.
+     * @param segments int number of segments.
+     * @param keys String[] cache keys in access order.
+     * @param sizes long[] size in bytes of the bitmap of each access.
+     * @return Result with the hit ratio and the bytes retained at the end of the trace.
+     */
+    public static Result replay(IEvictionPolicy policy, long limit, int segments, String[] keys, long[] sizes) {
+        if (keys.length != sizes.length) {
+            throw new IllegalArgumentException("Keys and sizes must have the same length");
+        }
+
+        final SegmentedMemoryCache<Long> cache = new SegmentedMemoryCache<Long>(limit, segments, policy) {
+            @Override
+            long sizeOf(Long value) {
+                return value;
+            }
+        };
+
+        long hits = 0;
+
+        for (int i = 0; i < keys.length; i++) {
+            if (cache.get(keys[i]) != null) {
+                hits++;
+            } else {
+                cache.put(keys[i], sizes[i]);
+            }
+        }
+
+        return new Result(keys.length, hits, cache.getSize());
+    }
+
+}
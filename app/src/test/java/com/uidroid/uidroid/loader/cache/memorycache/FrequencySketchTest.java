@@ -0,0 +1,68 @@
+package com.uidroid.uidroid.loader.cache.memorycache;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FrequencySketchTest {
+
+    @Test
+    public void countsIncrements() {
+        final FrequencySketch sketch = new FrequencySketch(1024);
+
+        assertEquals(0, sketch.frequency("a".hashCode()));
+
+        for (int i = 0; i < 5; i++) {
+            sketch.increment("a".hashCode());
+        }
+
+        assertEquals(5, sketch.frequency("a".hashCode()));
+    }
+
+    @Test
+    public void neverUnderestimates() {
+        final FrequencySketch sketch = new FrequencySketch(64);
+
+        // More keys than counters, so estimates collide, but only upwards
+        for (int key = 0; key < 200; key++) {
+            for (int i = 0; i < key % 5; i++) {
+                sketch.increment(key);
+            }
+        }
+
+        for (int key = 0; key < 200; key++) {
+            assertTrue(sketch.frequency(key) >= key % 5);
+        }
+    }
+
+    @Test
+    public void saturates() {
+        final FrequencySketch sketch = new FrequencySketch(1024);
+
+        for (int i = 0; i < 100; i++) {
+            sketch.increment(42);
+        }
+
+        assertEquals(15, sketch.frequency(42));
+    }
+
+    @Test
+    public void agesCounters() {
+        // Width 16, so counters are halved every 160 additions
+        final FrequencySketch sketch = new FrequencySketch(16);
+
+        for (int i = 0; i < 10; i++) {
+            sketch.increment(7);
+        }
+
+        final int before = sketch.frequency(7);
+
+        for (int i = 0; i < 160; i++) {
+            sketch.increment(1000 + i);
+        }
+
+        assertTrue(sketch.frequency(7) < before);
+    }
+
+}
@@ -0,0 +1,104 @@
+package com.uidroid.uidroid.loader.cache.memorycache;
+
+import com.uidroid.uidroid.Throughput;
+
+/**
+ * Measures the throughput of the single lock LruMemoryCache and of the SegmentedMemoryCache with
+ * 1, 4 and 8 threads, each doing 90% gets and 10% puts on a skewed key set, as the image loader
+ * does while scrolling. It's a benchmark, not a test: run main.
+ */
+public class MemoryCacheContentionBenchmark {
+
+    private static final int KEYS = 4096;
+    private static final long LIMIT = KEYS * 1024L / 2;
+    private static final int[] THREADS = {1, 4, 8};
+
+    private interface Cache {
+        byte[] get(String key);
+        void put(String key, byte[] value);
+    }
+
+    private static Cache singleLock() {
+        final LruMemoryCache<byte[]> cache = new LruMemoryCache<byte[]>(LIMIT) {
+            @Override
+            long sizeOf(byte[] value) {
+                return value.length;
+            }
+        };
+
+        return new Cache() {
+            @Override
+            public byte[] get(String key) {
+                return cache.get(key);
+            }
+
+            @Override
+            public void put(String key, byte[] value) {
+                cache.put(key, value);
+            }
+        };
+    }
+
+    private static Cache segmented() {
+        final SegmentedMemoryCache<byte[]> cache = new SegmentedMemoryCache<byte[]>(LIMIT, 8, new LruEvictionPolicy()) {
+            @Override
+            long sizeOf(byte[] value) {
+                return value.length;
+            }
+        };
+
+        return new Cache() {
+            @Override
+            public byte[] get(String key) {
+                return cache.get(key);
+            }
+
+            @Override
+            public void put(String key, byte[] value) {
+                cache.put(key, value);
+            }
+        };
+    }
+
+    /**
+     * Runs the workload on the provided cache and returns the operations per second.
+     */
+    private static double run(Cache cache, int threads, long millis) throws Exception {
+        final String[] keys = new String[KEYS];
+        final byte[] value = new byte[1024];
+
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = "key" + i;
+            cache.put(keys[i], value);
+        }
+
+        return Throughput.measure(threads, millis, random -> {
+            // Squaring skews the accesses toward the first keys
+            final double r = random.nextDouble();
+            final String key = keys[(int) (r * r * KEYS)];
+
+            if (random.nextInt(10) == 0) {
+                cache.put(key, value);
+            } else {
+                cache.get(key);
+            }
+        });
+    }
+
+    private static void runAll(long millis) throws Exception {
+        for (int threads : THREADS) {
+            final double single = run(singleLock(), threads, millis);
+            final double segmented = run(segmented(), threads, millis);
+
+            System.out.printf("threads=%d single lock=%.0f ops/s segmented=%.0f ops/s%n",
+                    threads, single, segmented);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        // Warm up, then measure
+        runAll(500);
+        runAll(2000);
+    }
+
+}
@@ -0,0 +1,216 @@
+package com.uidroid.uidroid.loader.cache.memorycache;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SegmentedMemoryCacheTest {
+
+    private static final int THREADS = 8;
+    private static final int KEYS = 512;
+    private static final int OPERATIONS = 20000;
+
+    /**
+     * Cache of byte arrays, sized by their length, which records every value put and removed.
+     */
+    private static final class ByteArrayCache extends SegmentedMemoryCache<byte[]> {
+
+        private final AtomicLong bytesPut = new AtomicLong();
+        private final AtomicLong bytesRemoved = new AtomicLong();
+        private final Set<byte[]> removed = Collections.synchronizedSet(
+                Collections.newSetFromMap(new IdentityHashMap<>()));
+
+        private ByteArrayCache(long limit, int segments, IEvictionPolicy policy) {
+            super(limit, segments, policy);
+        }
+
+        @Override
+        long sizeOf(byte[] value) {
+            return value.length;
+        }
+
+        @Override
+        boolean isRemovedObserved() {
+            return true;
+        }
+
+        @Override
+        void onRemoved(byte[] value) {
+            // Every value leaves the cache once
+            assertTrue(removed.add(value));
+            bytesRemoved.addAndGet(value.length);
+        }
+
+        @Override
+        public void put(String key, byte[] value) {
+            bytesPut.addAndGet(value.length);
+            super.put(key, value);
+        }
+
+        private long cachedBytes() {
+            long bytes = 0;
+
+            for (int i = 0; i < KEYS; i++) {
+                final byte[] value = get("key" + i);
+
+                if (value != null) {
+                    bytes += value.length;
+                }
+            }
+
+            return bytes;
+        }
+
+    }
+
+    @Test
+    public void keepsValuesUntilFull() {
+        final ByteArrayCache cache = new ByteArrayCache(1000, 1, new LruEvictionPolicy());
+        final byte[] value = new byte[100];
+
+        cache.put("a", value);
+
+        assertSame(value, cache.get("a"));
+        assertTrue(cache.contains("a"));
+        assertFalse(cache.contains("b"));
+        assertNull(cache.get(null));
+        assertEquals(100, cache.getSize());
+    }
+
+    @Test
+    public void evictsAboveLimit() {
+        final ByteArrayCache cache = new ByteArrayCache(1000, 1, new LruEvictionPolicy());
+
+        for (int i = 0; i < 20; i++) {
+            cache.put("key" + i, new byte[100]);
+        }
+
+        assertTrue(cache.getSize() <= cache.getLimit());
+        assertEquals(cache.cachedBytes(), cache.getSize());
+        assertEquals(cache.bytesPut.get(), cache.getSize() + cache.bytesRemoved.get());
+    }
+
+    @Test
+    public void cachesValueLargerThanSegmentInOverflow() {
+        // Segments of 6000 bytes, overflow segment of 16000 bytes
+        final ByteArrayCache cache = new ByteArrayCache(64000, 8, new LruEvictionPolicy());
+
+        for (int i = 0; i < 200; i++) {
+            cache.put("key" + i, new byte[100]);
+        }
+
+        final byte[] large = new byte[14700];
+        cache.put("large", large);
+
+        assertSame(large, cache.get("large"));
+        assertTrue(cache.contains("large"));
+        assertEquals(0, cache.bytesRemoved.get());
+        assertEquals(20000 + 14700, cache.getSize());
+
+        // Replaced by a value fitting its segment
+        final byte[] small = new byte[100];
+        cache.put("large", small);
+
+        assertSame(small, cache.get("large"));
+        assertTrue(cache.removed.contains(large));
+        assertEquals(20100, cache.getSize());
+    }
+
+    @Test
+    public void rejectsValueLargerThanOverflowWithoutEvicting() {
+        final ByteArrayCache cache = new ByteArrayCache(64000, 8, new LruEvictionPolicy());
+
+        for (int i = 0; i < 200; i++) {
+            cache.put("key" + i, new byte[100]);
+        }
+
+        final byte[] huge = new byte[20000];
+        cache.put("huge", huge);
+
+        assertNull(cache.get("huge"));
+        assertEquals(1, cache.removed.size());
+        assertTrue(cache.removed.contains(huge));
+        assertEquals(20000, cache.cachedBytes());
+        assertEquals(20000, cache.getSize());
+    }
+
+    @Test
+    public void accountsBytesExactlyUnderConcurrentPutsAndClears() throws Exception {
+        accountsBytesExactly(new LruEvictionPolicy());
+    }
+
+    @Test
+    public void accountsBytesExactlyWithAdmissionPolicy() throws Exception {
+        accountsBytesExactly(new TinyLfuEvictionPolicy(KEYS));
+    }
+
+    private void accountsBytesExactly(IEvictionPolicy policy) throws Exception {
+        final ByteArrayCache cache = new ByteArrayCache(64 * 1024, 8, policy);
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final CountDownLatch start = new CountDownLatch(1);
+
+        try {
+            final Future<?>[] futures = new Future<?>[THREADS];
+
+            for (int t = 0; t < THREADS; t++) {
+                final long seed = t;
+
+                futures[t] = executor.submit(() -> {
+                    final Random random = new Random(seed);
+
+                    start.await();
+
+                    for (int i = 0; i < OPERATIONS; i++) {
+                        final String key = "key" + random.nextInt(KEYS);
+
+                        if (random.nextInt(1000) == 0) {
+                            cache.clear();
+                        } else if (random.nextInt(4) == 0) {
+                            cache.get(key);
+                        } else {
+                            // Replaces the value of the key with one of a different size, at times
+                            // too large for its segment
+                            final int length = random.nextInt(100) == 0 ? 7000 : 1 + random.nextInt(2048);
+                            cache.put(key, new byte[length]);
+                        }
+                    }
+
+                    return null;
+                });
+            }
+
+            start.countDown();
+
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(cache.getSize() <= cache.getLimit());
+        assertEquals(cache.cachedBytes(), cache.getSize());
+        assertEquals(cache.bytesPut.get(), cache.getSize() + cache.bytesRemoved.get());
+
+        cache.clear();
+
+        assertEquals(0, cache.getSize());
+        assertEquals(cache.bytesPut.get(), cache.bytesRemoved.get());
+    }
+
+}
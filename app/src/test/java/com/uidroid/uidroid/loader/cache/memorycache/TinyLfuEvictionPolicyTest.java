@@ -0,0 +1,103 @@
+package com.uidroid.uidroid.loader.cache.memorycache;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TinyLfuEvictionPolicyTest {
+
+    private static final long SIZE = 1000;
+
+    @Test
+    public void admitsMoreFrequentCandidate() {
+        final TinyLfuEvictionPolicy policy = new TinyLfuEvictionPolicy(1024);
+
+        for (int i = 0; i < 3; i++) {
+            policy.recordAccess("hot");
+        }
+        policy.recordAccess("cold");
+
+        assertTrue(policy.admit("hot", "cold"));
+        assertFalse(policy.admit("cold", "hot"));
+        // Ties keep the victim
+        assertFalse(policy.admit("hot", "hot"));
+    }
+
+    @Test
+    public void usesWindowRatio() {
+        assertEquals(0.1f, new TinyLfuEvictionPolicy(16).getWindowRatio(), 0);
+        assertEquals(0.5f, new TinyLfuEvictionPolicy(16, 0.5f).getWindowRatio(), 0);
+        assertEquals(0f, new LruEvictionPolicy().getWindowRatio(), 0);
+    }
+
+    /**
+     * A hot set used in every round, interleaved with scans of images seen only once and larger
+     * than the cache, as a fling through a feed between visits to the same screen.
+     */
+    private static List<String> scanTrace(int hotKeys, int scanKeys, int rounds) {
+        final List<String> trace = new ArrayList<>();
+        int scanned = 0;
+
+        for (int round = 0; round < rounds; round++) {
+            for (int i = 0; i < hotKeys; i++) {
+                trace.add("hot" + i);
+            }
+
+            for (int i = 0; i < scanKeys; i++) {
+                trace.add("scan" + scanned++);
+            }
+        }
+
+        return trace;
+    }
+
+    private static long[] sizes(List<String> trace) {
+        final long[] sizes = new long[trace.size()];
+
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = SIZE;
+        }
+
+        return sizes;
+    }
+
+    @Test
+    public void admissionBeatsLruOnScans() {
+        final List<String> trace = scanTrace(50, 200, 100);
+        final String[] keys = trace.toArray(new String[0]);
+        final long limit = 100 * SIZE;
+
+        final EvictionPolicyReplay.Result lru =
+                EvictionPolicyReplay.replay(new LruEvictionPolicy(), limit, keys, sizes(trace));
+        final EvictionPolicyReplay.Result tinyLfu =
+                EvictionPolicyReplay.replay(new TinyLfuEvictionPolicy(100), limit, keys, sizes(trace));
+
+        // Every scan flushes the hot set out of an LRU cache, while the hot set can hit at most
+        // 50 times in each round but the first, a ratio of 0.198
+        assertEquals(0, lru.hits);
+        assertTrue(tinyLfu.getHitRatio() > 0.15);
+        assertTrue(tinyLfu.bytesRetained <= limit);
+    }
+
+    @Test
+    public void admissionBeatsLruOnScansWithSharedPolicyAcrossSegments() {
+        final List<String> trace = scanTrace(50, 200, 100);
+        final String[] keys = trace.toArray(new String[0]);
+        final long limit = 100 * SIZE;
+
+        final EvictionPolicyReplay.Result lru =
+                EvictionPolicyReplay.replay(new LruEvictionPolicy(), limit, 8, keys, sizes(trace));
+        final EvictionPolicyReplay.Result tinyLfu =
+                EvictionPolicyReplay.replay(new TinyLfuEvictionPolicy(100), limit, 8, keys, sizes(trace));
+
+        assertEquals(0, lru.hits);
+        assertTrue(tinyLfu.getHitRatio() > 0.15);
+        assertTrue(tinyLfu.bytesRetained <= limit);
+    }
+
+}
@@ -0,0 +1,101 @@
+package com.uidroid.uidroid.model;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the children index of ViewConfiguration through the lookups that use it.
+ */
+public class ChildrenIndexTest {
+
+    private static ViewConfiguration configuration(String id) {
+        return new ViewConfiguration(id, null, null);
+    }
+
+    @Test
+    public void findsChildrenByKeyAndId() {
+        final ViewConfiguration parent = configuration("parent");
+        final ViewConfiguration title = configuration("title");
+        final ViewConfiguration image = configuration("image");
+
+        parent.addChildConfiguration("title", title);
+        parent.addChildConfiguration("image", image);
+
+        assertSame(title, parent.getChildConfigurationByKey("title"));
+        assertSame(image, parent.getChildConfigurationById("image"));
+        assertTrue(parent.hasChild("title"));
+        assertNull(parent.getChildConfigurationByKey("missing"));
+        assertNull(parent.getChildConfigurationByKey(null));
+        assertNull(parent.getChildConfigurationById(null));
+    }
+
+    @Test
+    public void keepsOrderOfChildrenWithSameKey() {
+        final ViewConfiguration parent = configuration("parent");
+        final List<ViewConfiguration> items = Arrays.asList(configuration("a"), configuration("b"), configuration("c"));
+
+        parent.addChildrenConfigurations("items", items);
+
+        assertEquals(items, parent.getChildrenConfigurations("items"));
+        assertSame(items.get(0), parent.getChildConfigurationByKey("items"));
+    }
+
+    @Test
+    public void updatesOnRemove() {
+        final ViewConfiguration parent = configuration("parent");
+        final ViewConfiguration first = configuration("a");
+        final ViewConfiguration second = configuration("b");
+
+        parent.addChildrenConfigurations("items", Arrays.asList(first, second));
+        parent.removeChildByPosition(0, null);
+
+        assertSame(second, parent.getChildConfigurationByKey("items"));
+        assertNull(parent.getChildConfigurationById("a"));
+
+        parent.removeChildByFilter((key, configuration) -> "items".equals(key));
+
+        assertNull(parent.getChildConfigurationByKey("items"));
+        assertTrue(parent.getChildrenConfigurations("items").isEmpty());
+    }
+
+    @Test
+    public void restoresChildSharingRemovedId() {
+        final ViewConfiguration parent = configuration("parent");
+        final ViewConfiguration first = configuration("same");
+        final ViewConfiguration second = configuration("same");
+
+        parent.addChildConfiguration("first", first);
+        parent.addChildConfiguration("second", second);
+
+        assertSame(first, parent.getChildConfigurationById("same"));
+
+        parent.removeChildByFilter((key, configuration) -> "first".equals(key));
+
+        assertSame(second, parent.getChildConfigurationById("same"));
+    }
+
+    @Test
+    public void invalidatesFilteredChildren() {
+        final ViewConfiguration parent = configuration("parent");
+        final ViewConfiguration.IViewConfigurationFilter filter = (key, configuration) -> "items".equals(key);
+
+        parent.addChildConfiguration("items", configuration("a"));
+
+        final List<ViewConfiguration> before = parent.getFilteredChildrenConfigurations(filter);
+
+        assertEquals(1, before.size());
+        assertSame(before, parent.getFilteredChildrenConfigurations(filter));
+
+        parent.addChildConfiguration("items", configuration("b"));
+
+        assertEquals(2, parent.getFilteredChildrenConfigurations(filter).size());
+    }
+
+}
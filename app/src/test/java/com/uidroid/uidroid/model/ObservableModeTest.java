@@ -0,0 +1,67 @@
+package com.uidroid.uidroid.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the observable mode of ViewConfiguration, set on the root of a tree.
+ */
+public class ObservableModeTest {
+
+    private static ViewConfiguration configuration(String id) {
+        return new ViewConfiguration(id, null, null);
+    }
+
+    @Test
+    public void descendantsOfAnObservedRootAreObserved() {
+        final ViewConfiguration root = configuration("root");
+        final ViewConfiguration child = configuration("child");
+        final ViewConfiguration grandChild = configuration("grandChild");
+
+        root.addChildConfiguration("child", child);
+        child.addChildConfiguration("grandChild", grandChild);
+
+        assertFalse(root.isObserved());
+        assertFalse(grandChild.isObserved());
+
+        root.setObserver(configuration -> { });
+
+        assertTrue(root.isObserved());
+        assertTrue(child.isObserved());
+        assertTrue(grandChild.isObserved());
+
+        root.setObserver(null);
+
+        assertFalse(grandChild.isObserved());
+    }
+
+    @Test
+    public void notifiesOncePerDirtyConfiguration() {
+        final ViewConfiguration root = configuration("root");
+        final ViewConfiguration child = configuration("child");
+        final List<ViewConfiguration> dirty = new ArrayList<>();
+
+        root.addChildConfiguration("child", child);
+        root.setObserver(dirty::add);
+
+        child.putParam("text", "a");
+        child.putParam("text", "b");
+
+        assertEquals(1, dirty.size());
+        assertSame(child, dirty.get(0));
+        assertTrue(child.isDirty());
+
+        child.clearDirty();
+        child.putParam("text", "c");
+
+        assertEquals(2, dirty.size());
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.uidroid.uidroid.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+public class ParamKeyTest {
+
+    @Test
+    public void assignsStableIds() {
+        final int id = ParamKey.getId("ParamKeyTest.stable");
+
+        assertEquals(id, ParamKey.getId("ParamKeyTest.stable"));
+        assertEquals(id, ParamKey.findId("ParamKeyTest.stable"));
+        assertEquals("ParamKeyTest.stable", ParamKey.getKey(id));
+    }
+
+    @Test
+    public void assignsDistinctIds() {
+        assertNotEquals(ParamKey.getId("ParamKeyTest.first"), ParamKey.getId("ParamKeyTest.second"));
+    }
+
+    @Test
+    public void findDoesNotRegister() {
+        assertEquals(-1, ParamKey.findId("ParamKeyTest.unknown"));
+        assertEquals(-1, ParamKey.findId("ParamKeyTest.unknown"));
+        assertEquals(-1, ParamKey.findId(null));
+    }
+
+    @Test
+    public void unknownIdHasNoKey() {
+        assertNull(ParamKey.getKey(-1));
+        assertNull(ParamKey.getKey(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void stringParamsDoNotGrowRegistry() {
+        final ViewConfiguration configuration = new ViewConfiguration("id", null, null);
+
+        for (int i = 0; i < 100; i++) {
+            configuration.putParam("ParamKeyTest.dynamic" + i, i);
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(-1, ParamKey.findId("ParamKeyTest.dynamic" + i));
+            assertEquals(i, configuration.getIntegerParam("ParamKeyTest.dynamic" + i, -1));
+        }
+    }
+
+}
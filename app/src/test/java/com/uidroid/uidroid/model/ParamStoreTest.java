@@ -0,0 +1,169 @@
+package com.uidroid.uidroid.model;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ParamStoreTest {
+
+    /**
+     * Registers keys until one gets an id in the sparse range.
+     */
+    private static int sparseId(String prefix) {
+        int id = -1;
+
+        for (int i = 0; id < ParamStore.DENSE_LIMIT; i++) {
+            id = ParamKey.getId(prefix + i);
+        }
+
+        return id;
+    }
+
+    @Test
+    public void storesPrimitivesUnboxed() {
+        final ParamStore store = new ParamStore();
+        final int key = ParamKey.getId("ParamStoreTest.primitive");
+
+        store.put(key, 42);
+        assertEquals(42, store.getInt(key, -1));
+        assertEquals(42L, store.getLong(key, -1));
+        assertEquals(Integer.valueOf(42), store.getInteger(key));
+        assertEquals(Integer.valueOf(42), store.get(key));
+
+        store.put(key, 1.5);
+        assertEquals(1.5, store.getDouble(key, -1), 0);
+        assertEquals(-1, store.getInt(key, -1));
+
+        store.put(key, true);
+        assertTrue(store.getBoolean(key, false));
+        assertEquals(Boolean.TRUE, store.get(key));
+    }
+
+    @Test
+    public void parsesStringParams() {
+        final ParamStore store = new ParamStore();
+        final int key = ParamKey.getId("ParamStoreTest.string");
+
+        store.put(key, "12");
+        assertEquals("12", store.getString(key));
+        assertEquals(12, store.getInt(key, -1));
+        assertEquals(Integer.valueOf(12), store.getInteger(key));
+        assertSame(store.getInteger(key), store.getInteger(key));
+        assertEquals(12.0, store.getDouble(key, -1), 0);
+
+        store.put(key, "true");
+        assertTrue(store.getBoolean(key, false));
+    }
+
+    @Test
+    public void missingParamsReturnDefaults() {
+        final ParamStore store = new ParamStore();
+        final int key = ParamKey.getId("ParamStoreTest.missing");
+
+        assertNull(store.get(key));
+        assertNull(store.get(-1));
+        assertNull(store.getString("ParamStoreTest.neverPut"));
+        assertEquals(7, store.getInt(key, 7));
+        assertFalse(store.getBoolean(key, false));
+    }
+
+    @Test
+    public void storesHighIdsSparsely() {
+        final ParamStore store = new ParamStore();
+        final int high = sparseId("ParamStoreTest.sparse");
+        final int low = 0;
+
+        store.put(high, "high");
+        store.put(low, "low");
+        store.put(high, 3);
+
+        assertEquals(3, store.getInt(high, -1));
+        assertEquals("low", store.getString(low));
+        assertNull(store.get(high + 1));
+        assertNull(store.get(high - 1));
+        assertEquals(2, store.toMap().size());
+    }
+
+    @Test
+    public void keepsSparseKeysSorted() {
+        final ParamStore store = new ParamStore();
+        final int base = sparseId("ParamStoreTest.sorted");
+        final int[] ids = new int[10];
+
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = ParamKey.getId("ParamStoreTest.sorted.more" + i);
+        }
+
+        // Inserted in descending order, so every insert shifts the sparse arrays
+        for (int i = ids.length - 1; i >= 0; i--) {
+            store.put(ids[i], i);
+        }
+
+        store.put(base, -1);
+
+        for (int i = 0; i < ids.length; i++) {
+            assertEquals(i, store.getInt(ids[i], -2));
+        }
+
+        assertEquals(-1, store.getInt(base, -2));
+    }
+
+    @Test
+    public void storesUnregisteredKeysByName() {
+        final ParamStore store = new ParamStore();
+
+        store.put("ParamStoreTest.named", 5);
+
+        assertEquals(-1, ParamKey.findId("ParamStoreTest.named"));
+        assertEquals(5, store.getInt("ParamStoreTest.named", -1));
+        assertEquals(Integer.valueOf(5), store.toMap().get("ParamStoreTest.named"));
+    }
+
+    @Test
+    public void movesNamedParamWhenKeyIsRegistered() {
+        final ParamStore store = new ParamStore();
+
+        store.put("ParamStoreTest.late", "value");
+
+        final int id = ParamKey.getId("ParamStoreTest.late");
+
+        assertEquals("value", store.getString(id));
+        assertEquals("value", store.getString("ParamStoreTest.late"));
+
+        store.put(id, "other");
+
+        final Map<String, Object> map = store.toMap();
+
+        assertEquals(1, map.size());
+        assertEquals("other", map.get("ParamStoreTest.late"));
+    }
+
+    @Test
+    public void contentHashDependsOnKeysAndValues() {
+        final int key = ParamKey.getId("ParamStoreTest.hash");
+        final ParamStore first = new ParamStore();
+        final ParamStore second = new ParamStore();
+
+        first.put(key, 1);
+        first.put("ParamStoreTest.hash.a", "a");
+        first.put("ParamStoreTest.hash.b", "b");
+
+        second.put("ParamStoreTest.hash.b", "b");
+        second.put("ParamStoreTest.hash.a", "a");
+        second.put(key, Integer.valueOf(1));
+
+        assertEquals(first.contentHash(), second.contentHash());
+
+        second.put(key, 2);
+
+        assertNotEquals(first.contentHash(), second.contentHash());
+    }
+
+}
@@ -23,6 +23,30 @@ public final class Utils {
         return "\"" + s + "\"";
     }
 
+    /**
+     * Returns the name of the ParamKeys field holding the id of the provided param key. Characters
+     * which can't appear in a Java identifier are escaped as "_" followed by their hex code, and "_"
+     * itself as "__", so two different keys never share the same field.
+     */
+    public static String getParamKeyField(String key) {
+        StringBuilder field = new StringBuilder("KEY_");
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c == '_') {
+                field.append("__");
+            } else if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) {
+                field.append(c);
+            } else {
+                field.append(String.format("_%04x", (int) c));
+            }
+        }
+        return field.toString();
+    }
+
+    public static String getParamKeyCode(String key) {
+        return "ParamKeys." + getParamKeyField(key);
+    }
+
     public static String getClearClassName(String className) {
         if (className.contains("<") && className.contains(">")) {
             final int index = className.indexOf("<");
@@ -3,10 +3,12 @@ package com.uidroid.processor.configuration;
 import static com.uidroid.processor.Utils.capitalize;
 import static com.uidroid.processor.Utils.getCodeParams;
 import static com.uidroid.processor.Utils.getCodeString;
+import static com.uidroid.processor.Utils.getParamKeyCode;
 
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Class representing an ViewConfiguration annotated object or a field annotated with FieldConfiguration.
@@ -57,14 +59,14 @@ class ConfigurationObject implements UIField {
                 + "); \n");
 
         out.print("    " + variableName + ".putParam("
-                + getCodeString(key) + ", value." + fieldName
+                + getParamKeyCode(key) + ", value." + fieldName
                 + "); \n");
 
         for (UIField field: uiFields) {
             if (field instanceof StableParameter) {
                 StableParameter param = (StableParameter) field;
                 out.print("    " + variableName + ".putParam("
-                        + getCodeString(param.key) + ", " + getCodeString(param.value)
+                        + getParamKeyCode(param.key) + ", " + getCodeString(param.value)
                         + "); \n");
             }
         }
@@ -73,6 +75,26 @@ class ConfigurationObject implements UIField {
                 + "); \n");
     }
 
+    /**
+     * Collects the keys of the params put by the generated code of this object into the provided
+     * set.
+     */
+    public void collectParamKeys(Set<String> keys) {
+        if (fieldName != null) {
+            keys.add(key);
+        }
+
+        for (UIField field: uiFields) {
+            if (field instanceof Parameter) {
+                keys.add(((Parameter) field).key);
+            } else if (field instanceof StableParameter) {
+                keys.add(((StableParameter) field).key);
+            } else if (field instanceof ConfigurationObject) {
+                ((ConfigurationObject) field).collectParamKeys(keys);
+            }
+        }
+    }
+
     public void printReturnCode(PrintWriter out) {
         out.print("    return object; \n");
     }
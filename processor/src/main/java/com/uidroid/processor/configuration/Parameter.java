@@ -1,7 +1,7 @@
 package com.uidroid.processor.configuration;
 
 import static com.uidroid.processor.Utils.getCodeParams;
-import static com.uidroid.processor.Utils.getCodeString;
+import static com.uidroid.processor.Utils.getParamKeyCode;
 
 import java.io.PrintWriter;
 
@@ -19,7 +19,7 @@ class Parameter implements UIField {
     public void printAddToConfigurationCode(PrintWriter out) {
         String child = "value." + fieldName;
         out.println("    object.putParam("
-                + getCodeParams(getCodeString(key), child)
+                + getCodeParams(getParamKeyCode(key), child)
                 + "); \n");
     }
 
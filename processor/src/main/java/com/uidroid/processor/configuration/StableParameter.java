@@ -2,6 +2,7 @@ package com.uidroid.processor.configuration;
 
 import static com.uidroid.processor.Utils.getCodeParams;
 import static com.uidroid.processor.Utils.getCodeString;
+import static com.uidroid.processor.Utils.getParamKeyCode;
 
 import java.io.PrintWriter;
 
@@ -18,7 +19,7 @@ class StableParameter implements UIField {
     @Override
     public void printAddToConfigurationCode(PrintWriter out) {
         out.print("    object.putParam("
-                + getCodeParams(getCodeString(key), getCodeString(value))
+                + getCodeParams(getParamKeyCode(key), getCodeString(value))
                 + "); \n");
     }
 
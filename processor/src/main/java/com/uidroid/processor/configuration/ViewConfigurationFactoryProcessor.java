@@ -1,6 +1,7 @@
 package com.uidroid.processor.configuration;
 
 import static com.uidroid.processor.Utils.getCodeString;
+import static com.uidroid.processor.Utils.getParamKeyField;
 import static com.uidroid.processor.Utils.getSimpleName;
 
 import com.uidroid.annotation.UI;
@@ -8,6 +9,7 @@ import com.uidroid.annotation.UI;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 
@@ -229,6 +231,7 @@ public class ViewConfigurationFactoryProcessor {
         }
 
         try {
+            writeParamKeys(map);
             write(map);
         } catch (IOException e) {
             error(e.getMessage());
@@ -296,6 +299,36 @@ public class ViewConfigurationFactoryProcessor {
         }
     }
 
+    private void writeParamKeys(Map<String, ConfigurationObject> map) throws IOException {
+        final Set<String> keys = new LinkedHashSet<>();
+
+        for (ConfigurationObject configurationObject: map.values()) {
+            configurationObject.collectParamKeys(keys);
+        }
+
+        JavaFileObject keysFile = filer
+                .createSourceFile("com.uidroid.uidroid.factory.ParamKeys");
+
+        try (PrintWriter out = new PrintWriter(keysFile.openWriter())) {
+            out.println("package com.uidroid.uidroid.factory;");
+            out.println();
+            out.println("import com.uidroid.uidroid.model.ParamKey;");
+            out.println();
+
+            out.print("public final class ParamKeys { \n\n");
+
+            for (String key: keys) {
+                out.print("  public static final int " + getParamKeyField(key)
+                        + " = ParamKey.getId(" + getCodeString(key) + "); \n");
+            }
+            out.print("\n");
+
+            out.print("  private ParamKeys() { \n\n");
+            out.print("  } \n\n");
+            out.print("}");
+        }
+    }
+
     private String getBinderClass(UI.BindWith annotation) {
         try {
             Class<?> value = annotation.binder();